@@ -0,0 +1,66 @@
+package frc.robot;
+
+import frc.robot.util.ShapingPipeline;
+import frc.robot.util.ShapingStages;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** ++ benchmarks the joystick shaping that runs on every drive axis every loop.
+* the stick and trigger positions are stubbed with a sweep so no controller is needed
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoyUtilBenchmark {
+
+    private double stickPos = -1.0;
+    private double prevFiltered = 0.0;
+    private double timestamp = 0.0;
+
+    // ++ same stages and order as composeDriveJoyFunctions, with the trigger stubbed the same way
+    private final ShapingPipeline pipeline = JoyUtil.makeDrivePipeline(() -> JoyUtil.fastMode(1.0, stickPos * 0.5));
+    private final ShapingStages.Curve curveTable = new ShapingStages.Curve(JoyUtil::joyCurve, Constants.Joysticks.curveTableSize);
+
+    // ++ sweeps the stubbed stick back and forth across its whole range
+    private double nextStickPos() {
+        stickPos += 0.001;
+        if (stickPos > 1.0) {
+            stickPos = -1.0;
+        }
+        return stickPos;
+    }
+
+    @Benchmark
+    public double composeDriveJoyFunctions() {
+        double pos = nextStickPos();
+        prevFiltered = JoyUtil.composeDriveJoyFunctions(pos, prevFiltered, Constants.Joysticks.driveLowPassFilterStrength, Constants.DriveTrain.DriveConstants.kDrivingSpeedDamper, pos * 0.5);
+        return prevFiltered;
+    }
+
+    @Benchmark
+    public double joyCurve() {
+        return JoyUtil.joyCurve(nextStickPos());
+    }
+
+    @Benchmark
+    public double shapingPipeline() {
+        timestamp += 0.02;
+        return pipeline.apply(nextStickPos(), timestamp);
+    }
+
+    @Benchmark
+    public double curveTable() {
+        return curveTable.apply(nextStickPos(), 0.02);
+    }
+}
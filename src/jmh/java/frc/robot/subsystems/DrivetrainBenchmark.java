@@ -0,0 +1,177 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.DriveTrain.DriveConstants;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <> the per loop drivetrain math. the hardware is stubbed out with a fake
+ * "robot" that moves a little every call, so the encoder and gyro readings
+ * change the same way they would on the field
+ *
+ * <p><> FourModuleKinematicsTest checks the kinematics give the same answers
+ * as wpilib, so the two kinematics benchmarks compare the same work
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrivetrainBenchmark {
+
+  private static final int kModules = 4;
+
+  // <> stubbed sensor readings
+  private final double[] m_distances = new double[kModules];
+  private final double[] m_angles = new double[kModules];
+  private double m_heading = 0;
+  private double m_joystick = 0;
+
+  private AllocationFreeOdometry m_fastOdometry;
+  private SwerveDriveOdometry m_odometry;
+  private FourModuleKinematics m_kinematics;
+  private final double[] m_speeds = new double[kModules];
+  private final double[] m_setpointAngles = new double[kModules];
+
+  @Setup
+  public void setup() {
+    m_kinematics =
+      new FourModuleKinematics(
+        DriveConstants.ChasisKinematics.kModuleTranslations
+      );
+    m_fastOdometry =
+      new AllocationFreeOdometry(
+        DriveConstants.ChasisKinematics.kModuleTranslations,
+        m_heading,
+        m_distances,
+        new Pose2d()
+      );
+    m_odometry =
+      new SwerveDriveOdometry(
+        DriveConstants.ChasisKinematics.kDriveKinematics,
+        new Rotation2d(m_heading),
+        positions()
+      );
+  }
+
+  // <> pretend the robot drove for one more loop
+  private void step() {
+    m_heading += 0.001;
+    m_joystick = Math.sin(m_heading * 10);
+    for (int i = 0; i < kModules; i++) {
+      m_distances[i] += 0.02;
+      m_angles[i] = m_heading * (i + 1);
+    }
+  }
+
+  private SwerveModulePosition[] positions() {
+    SwerveModulePosition[] positions = new SwerveModulePosition[kModules];
+    for (int i = 0; i < kModules; i++) {
+      positions[i] =
+        new SwerveModulePosition(m_distances[i], new Rotation2d(m_angles[i]));
+    }
+    return positions;
+  }
+
+  /** <> field relative conversion, toSwerveModuleStates and desaturation */
+  @Benchmark
+  public SwerveModuleState[] drive() {
+    step();
+    return DriveSubsystem.calculateModuleStates(
+      m_joystick,
+      -m_joystick * 0.5,
+      m_joystick * 0.25,
+      true,
+      new Rotation2d(m_heading)
+    );
+  }
+
+  /** <> the same as drive() with FourModuleKinematics */
+  @Benchmark
+  public double driveFourModuleKinematics() {
+    step();
+    DriveSubsystem.calculateModuleSetpoints(
+      m_kinematics,
+      m_joystick,
+      -m_joystick * 0.5,
+      m_joystick * 0.25,
+      true,
+      m_heading,
+      m_speeds,
+      m_setpointAngles
+    );
+    return m_speeds[0] + m_setpointAngles[0];
+  }
+
+  /** <> offset correction and optimize for all four modules */
+  @Benchmark
+  public double setDesiredState() {
+    step();
+    double total = 0;
+    SwerveModuleState desired = new SwerveModuleState(
+      m_joystick,
+      new Rotation2d(m_heading)
+    );
+    for (int i = 0; i < kModules; i++) {
+      total +=
+        SwerveModule.optimizeDesiredState(
+          desired,
+          DriveConstants.ModuleOffsets.kFrontRightOffset,
+          m_angles[i]
+        )
+          .speedMetersPerSecond;
+    }
+    return total;
+  }
+
+  /** <> the same as setDesiredState() with primitives */
+  @Benchmark
+  public double setDesiredStatePrimitive() {
+    step();
+    double total = 0;
+    double offset = DriveConstants.ModuleOffsets.kFrontRightOffset.getRadians();
+    for (int i = 0; i < kModules; i++) {
+      double speed = m_joystick;
+      double angle = MathUtil.angleModulus(m_heading + offset);
+      if (SwerveModule.shouldReverse(angle, m_angles[i])) {
+        speed = -speed;
+        angle = MathUtil.angleModulus(angle + Math.PI);
+      }
+      total += speed + angle;
+    }
+    return total;
+  }
+
+  @Benchmark
+  public double odometryAllocationFree() {
+    step();
+    m_fastOdometry.update(m_heading, m_distances, m_angles);
+    return m_fastOdometry.getX();
+  }
+
+  @Benchmark
+  public Pose2d odometrySwerveDriveOdometry() {
+    step();
+    return m_odometry.update(new Rotation2d(m_heading), positions());
+  }
+}
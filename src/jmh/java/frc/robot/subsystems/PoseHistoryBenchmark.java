@@ -0,0 +1,93 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** <> PoseHistory against wpilib's TimeInterpolatableBuffer */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseHistoryBenchmark {
+
+  // <> 1.5 seconds of history at the high frequency odometry rate
+  private static final double kPeriod = 0.005;
+  private static final int kSamples = 300;
+  private static final int kQueries = 1024;
+
+  private PoseHistory m_history;
+  private TimeInterpolatableBuffer<Pose2d> m_buffer;
+
+  private final double[] m_queries = new double[kQueries];
+  private final double[] m_pose = new double[3];
+  private int m_queryIndex = 0;
+  private double m_nextTimestamp;
+
+  @Setup
+  public void setup() {
+    m_history = new PoseHistory(kSamples);
+    m_buffer = TimeInterpolatableBuffer.createBuffer(kSamples * kPeriod);
+
+    for (int i = 0; i < kSamples; i++) {
+      double t = i * kPeriod;
+      m_history.add(t, Math.cos(t), Math.sin(t), t);
+      m_buffer.addSample(t, new Pose2d(Math.cos(t), Math.sin(t), new Rotation2d(t)));
+    }
+    m_nextTimestamp = kSamples * kPeriod;
+
+    Random random = new Random(3243);
+    for (int i = 0; i < kQueries; i++) {
+      m_queries[i] = random.nextDouble() * kSamples * kPeriod;
+    }
+  }
+
+  private double nextQuery() {
+    m_queryIndex = (m_queryIndex + 1) & (kQueries - 1);
+    return m_queries[m_queryIndex];
+  }
+
+  @Benchmark
+  public void poseHistorySample(Blackhole blackhole) {
+    m_history.sample(nextQuery(), m_pose);
+    blackhole.consume(m_pose[0]);
+  }
+
+  @Benchmark
+  public Object interpolatableBufferSample() {
+    return m_buffer.getSample(nextQuery());
+  }
+
+  @Benchmark
+  public void poseHistoryAdd() {
+    double t = m_nextTimestamp;
+    m_nextTimestamp += kPeriod;
+    m_history.add(t, 1, 2, 3);
+  }
+
+  @Benchmark
+  public void interpolatableBufferAdd() {
+    double t = m_nextTimestamp;
+    m_nextTimestamp += kPeriod;
+    m_buffer.addSample(t, new Pose2d(1, 2, new Rotation2d(3)));
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+import frc.robot.Constants.DriveTrain.DriveConstants.AutoConstants;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** <> CompiledTrajectory.sample against wpilib's Trajectory.sample */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledTrajectoryBenchmark {
+
+  private static final int kQueries = 1024;
+
+  private Trajectory m_trajectory;
+  private CompiledTrajectory m_compiled;
+
+  private final double[] m_queries = new double[kQueries];
+  private final double[] m_sample = new double[CompiledTrajectory.kSampleSize];
+  private int m_queryIndex = 0;
+
+  @Setup
+  public void setup() {
+    m_trajectory = AutoConstants.Paths.kTestPath.generate();
+    m_compiled =
+      new CompiledTrajectory(
+        m_trajectory,
+        AutoConstants.kCompiledTrajectoryDtSeconds
+      );
+
+    // <> make sure they agree before timing anything
+    double maxError = 0;
+    for (double t = 0; t < m_trajectory.getTotalTimeSeconds(); t += 0.001) {
+      Trajectory.State state = m_trajectory.sample(t);
+      m_compiled.sample(t, m_sample);
+      maxError =
+        Math.max(
+          maxError,
+          Math.hypot(
+            state.poseMeters.getX() - m_sample[CompiledTrajectory.kX],
+            state.poseMeters.getY() - m_sample[CompiledTrajectory.kY]
+          )
+        );
+    }
+    if (maxError > 1e-3) {
+      throw new IllegalStateException(
+        "compiled trajectory is off by " + maxError + " m"
+      );
+    }
+
+    Random random = new Random(3243);
+    for (int i = 0; i < kQueries; i++) {
+      m_queries[i] = random.nextDouble() * m_trajectory.getTotalTimeSeconds();
+    }
+  }
+
+  private double nextQuery() {
+    m_queryIndex = (m_queryIndex + 1) & (kQueries - 1);
+    return m_queries[m_queryIndex];
+  }
+
+  @Benchmark
+  public Object trajectorySample() {
+    return m_trajectory.sample(nextQuery());
+  }
+
+  @Benchmark
+  public void compiledTrajectorySample(Blackhole blackhole) {
+    m_compiled.sample(nextQuery(), m_sample);
+    blackhole.consume(m_sample[CompiledTrajectory.kX]);
+  }
+}
@@ -6,12 +6,16 @@ package frc.robot;
 
 import com.revrobotics.CANSparkMax.IdleMode;
 import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
+import frc.robot.subsystems.StatusFrameProfile;
+import frc.robot.util.TrajectoryDefinition;
+import java.util.List;
 
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide numerical or boolean
@@ -94,6 +98,73 @@ public final class Constants {
           (2 * Math.PI) / 60.0;
       }
 
+      // <> setpoints are only sent over CAN when they change by more than
+      // <> these, or when the keep alive runs out
+      public static final class CANWrites {
+
+        public static final double kDrivingSetpointEpsilon = 0.005; // <> meters per second
+        public static final double kTurningSetpointEpsilon = 0.002; // <> radians
+        public static final double kSetpointKeepAliveSeconds = 0.1; // <> seconds
+      }
+
+      // <> status frame periods for each mode (milliseconds, in the order
+      // <> status 0 through 6, see StatusFrameProfile for what's in each one)
+      public static final class StatusFrames {
+
+        // <> set to false to leave every spark max on rev's defaults
+        // <> (useful for measuring bus utilization before and after)
+        public static final boolean kUseStatusFrameProfiles = true;
+
+        // <> driving motors only need their own velocity and position fast
+        public static final StatusFrameProfile kDrivingDisabled = new StatusFrameProfile(
+          "driving disabled", 100, 100, 50, 500, 500, 500, 500
+        );
+        public static final StatusFrameProfile kDrivingAuto = new StatusFrameProfile(
+          "driving auto", 20, 10, 10, 500, 500, 500, 500
+        );
+        public static final StatusFrameProfile kDrivingTeleop = new StatusFrameProfile(
+          "driving teleop", 20, 20, 10, 500, 500, 500, 500
+        );
+        // <> characterization reads applied output, velocity and position
+        // <> every capture (Characterization.kCapturePeriodSeconds)
+        public static final StatusFrameProfile kDrivingCharacterization = new StatusFrameProfile(
+          "driving characterization", 5, 5, 5, 500, 500, 500, 500
+        );
+
+        // <> turning motors only need the absolute encoder's position fast
+        public static final StatusFrameProfile kTurningDisabled = new StatusFrameProfile(
+          "turning disabled", 100, 200, 500, 500, 500, 50, 500
+        );
+        public static final StatusFrameProfile kTurningAuto = new StatusFrameProfile(
+          "turning auto", 20, 100, 500, 500, 500, 10, 500
+        );
+        public static final StatusFrameProfile kTurningTeleop = new StatusFrameProfile(
+          "turning teleop", 20, 100, 500, 500, 500, 10, 500
+        );
+        public static final StatusFrameProfile kTurningCharacterization = new StatusFrameProfile(
+          "turning characterization", 20, 100, 500, 500, 500, 10, 500
+        );
+      }
+
+      // <> bump this to force every spark max to be reset and reflashed on the
+      // <> next boot (everything else in the config is hashed automatically)
+      public static final int kConfigVersion = 1;
+
+      // <> physics model used in simulation (see ModuleIOSim)
+      public static final class Simulation {
+
+        // <> quote from revrobotics: 9424:203 is the MAXSwerve steering reduction
+        public static final double kTurningMotorReduction = 9424.0 / 203;
+
+        // <> a quarter of the robot's mass at the wheel radius, and a guess
+        // <> for the steering assembly
+        public static final double kDrivingMoiKgMetersSq = 0.025;
+        public static final double kTurningMoiKgMetersSq = 0.004;
+
+        // <> the spark max closed loops run at 1 kHz, step the model that fast
+        public static final double kStepSeconds = 0.001; // <> seconds
+      }
+
       // <> the maximum wheel speed the modules will turn for
       // <> (in meters per second)
       public static final double kModuleMinSpeed = 0.02;
@@ -156,12 +227,18 @@ public final class Constants {
         // <> distance between front and back wheels on robot
         public static final double kRobotLength = Units.inchesToMeters(32);
 
-        // <> kinematics (defined with above constants)
-        public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(
+        // <> module locations relative to the center of the robot
+        // <> (front left, front right, rear left, rear right)
+        public static final Translation2d[] kModuleTranslations = {
           new Translation2d(kRobotLength / 2, kRobotWidth / 2),
           new Translation2d(kRobotLength / 2, -kRobotWidth / 2),
           new Translation2d(-kRobotLength / 2, kRobotWidth / 2),
-          new Translation2d(-kRobotLength / 2, -kRobotWidth / 2)
+          new Translation2d(-kRobotLength / 2, -kRobotWidth / 2),
+        };
+
+        // <> kinematics (defined with above constants)
+        public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(
+          kModuleTranslations
         );
       }
 
@@ -186,6 +263,9 @@ public final class Constants {
         public static final double kMovementP = 0.4;
         public static final double kTurningP = 0.52;
 
+        // <> time step trajectories are resampled at for the follower
+        public static final double kCompiledTrajectoryDtSeconds = 0.005; // <> seconds
+
         // <> config for generated trajectories
         public static final TrajectoryConfig trajectoryConfig = new TrajectoryConfig(
           DriveConstants.AutoConstants.kMaxMetersPerSecond,
@@ -198,6 +278,30 @@ public final class Constants {
           0,
           0
         );
+
+        // <> where the drive to pose command goes (see RobotContainer)
+        public static final Pose2d kDriveToPoseTarget = new Pose2d(
+          1,
+          0,
+          new Rotation2d(0)
+        );
+
+        // <> every trajectory the robot uses. these get pre-generated into
+        // <> the deploy directory by "./gradlew generateTrajectoryCache"
+        public static final class Paths {
+
+          public static final TrajectoryDefinition kTestPath = new TrajectoryDefinition(
+            "test",
+            new Pose2d(0, 0, new Rotation2d(0)),
+            List.of(new Translation2d(-0.5, 0.5)),
+            new Pose2d(-2, 0, Rotation2d.fromDegrees(90)),
+            trajectoryConfig
+          );
+
+          public static final List<TrajectoryDefinition> kAll = List.of(
+            kTestPath
+          );
+        }
       }
 
       // <> if the driving is field relative
@@ -213,6 +317,72 @@ public final class Constants {
 
       // <> this should be true
       public static final boolean kGyroReversed = true;
+
+      // <> track the pose with AllocationFreeOdometry instead of
+      // <> SwerveDriveOdometry (same math, no garbage every loop)
+      public static final boolean kZeroAllocationOdometry = true;
+
+      // <> drive with FourModuleKinematics instead of wpilib's kinematics
+      // <> (same answers, no garbage every loop)
+      public static final boolean kSpecializedKinematics = true;
+
+      // <> read the encoders and gyro on a separate, faster thread and feed
+      // <> every sample into odometry (the spark maxes only send new encoder
+      // <> readings as fast as their status frames, so those need to keep up)
+      public static final boolean kHighFrequencyOdometry = false;
+      public static final double kOdometryFrequencyHz = 200; // <> hz
+      public static final int kOdometryQueueCapacity = 32; // <> samples
+
+      // <> the navx sends updates on its own at this rate (4 to 200 hz), and
+      // <> this many are kept so the heading can be looked up by time
+      public static final int kNavXUpdateRateHz = 200; // <> hz
+      public static final int kNavXHistoryCapacity = 128; // <> updates
+
+      // <> how far back the pose history goes (for latency compensation)
+      public static final double kPoseHistorySeconds = 1.5; // <> seconds
+
+      // <> fixed rate drivetrain control on its own thread (see
+      // <> DriveControlLoop). a log replay only matches with this off, the
+      // <> loop's ticks aren't recorded
+      public static final class ControlLoop {
+
+        public static final boolean kEnabled = false;
+        public static final double kFrequencyHz = 200; // <> hz
+
+        // <> real time priority (1 to 99), the main robot thread isn't real
+        // <> time and the HAL's notifier thread is 40
+        public static final int kThreadPriority = 35;
+
+        // <> jitter and tick time histograms cover 0 to 10 ms in 10 us steps
+        public static final double kHistogramBinMicros = 10; // <> microseconds
+        public static final int kHistogramBins = 1000;
+
+        // <> publish once a second
+        public static final int kPublishPeriodTicks = (int) kFrequencyHz;
+      }
+
+      // <> feedforward characterization (see DriveCharacterizationCommand)
+      public static final class Characterization {
+
+        // <> how often voltage is set and readings are captured. readings
+        // <> only change as fast as the driving status frames come in
+        public static final double kCapturePeriodSeconds = 0.005; // <> seconds
+
+        // <> quasistatic tests ramp the voltage up slowly, dynamic tests
+        // <> apply a step
+        public static final double kQuasistaticVoltsPerSecond = 1.0; // <> volts per second
+        public static final double kDynamicStepVolts = 7.0; // <> volts
+
+        // <> a test stops on its own after this long (or when the button is
+        // <> let go), which also sizes the capture buffer
+        public static final double kMaxTestSeconds = 10.0; // <> seconds
+        public static final int kMaxSamples =
+          (int) Math.ceil(kMaxTestSeconds / kCapturePeriodSeconds) + 1;
+
+        // <> samples slower than this are left out of the fit (the wheel
+        // <> isn't moving yet, so there's no kS direction)
+        public static final double kMinFitVelocity = 0.05; // <> meters per second
+      }
     }
   }
 
@@ -245,8 +415,27 @@ public final class Constants {
     public static final int secondPower = 1;
     public static final double bCoeff = (1.0 - aCoeff);
 
+    // ++ JOYSTICK SHAPING PIPELINE CONSTANTS --
+    /** ++ true runs the sticks through the ShapingPipelines in JoyUtil, false uses composeDriveJoyFunctions like before */
+    public static final boolean useShapingPipeline = false;
+    /** ++ how many points the joystick curve is sampled at across [-1, 1] (2001 is every 0.001) */
+    public static final int curveTableSize = 2001;
+    /** ++ fastest the shaped drive sticks can change, in full stick per second (0 to full in 1/this seconds) */
+    public static final double driveRateLimit = 4.0;
+
+    // ++ ONE EURO FILTER CONSTANTS (compare against the other filters with "./gradlew filterReport") --
+    /** ++ cutoff when the stick is held still, lower is smoother */
+    public static final double oneEuroMinCutoffHz = 1.0;
+    /** ++ how much the cutoff goes up as the stick moves faster, higher lags less */
+    public static final double oneEuroBeta = 0.5;
+    /** ++ cutoff for the stick speed the filter estimates */
+    public static final double oneEuroDerivativeCutoffHz = 1.0;
+
     // <> why can't this be an enum (check robot container to see how these are used)
     public static final int A = 1;
+    public static final int B = 2;
+    public static final int X = 3;
+    public static final int Y = 4;
   }
 
   /** ++ constants for GRABBER ---------------------------------------------------------- */
@@ -258,9 +447,98 @@ public final class Constants {
   /** ++ constants for PHOTONVISION ----------------------------------------------------- */
   public static final class PhotonVision {}
 
+  /** <> constants for LOOP PROFILING ------------------------------------------------- */
+  public static final class Profiling {
+
+    // <> the loop period everything is timed against (TimedRobot's default)
+    public static final double kLoopPeriodSeconds = 0.02; // <> seconds
+
+    // <> histograms cover 0 to 40 ms in 50 us steps
+    public static final double kHistogramBinMicros = 50; // <> microseconds
+    public static final int kHistogramBins = 800;
+
+    // <> how many sections (subsystems + commands) can be timed
+    public static final int kMaxSections = 32;
+
+    // <> publish summaries once a second
+    public static final int kPublishPeriodCycles = 50; // <> cycles
+
+    // <> count the bytes every section allocates, and match garbage
+    // <> collections to overruns (see LoopProfiler)
+    public static final boolean kTrackAllocations = true;
+
+    // <> collections queued for the main thread, and how many of the most
+    // <> recent overruns a collection is matched against
+    public static final int kGCQueueCapacity = 16;
+    public static final int kOverrunHistory = 8;
+
+    // <> input latency histograms cover 0 to 100 ms in 100 us steps (a stale
+    // <> driver station packet can be older than a whole loop)
+    public static final double kLatencyHistogramBinMicros = 100; // <> microseconds
+    public static final int kLatencyHistogramBins = 1000;
+  }
+
+  /** <> constants for TELEMETRY LOGGING ---------------------------------------------- */
+  public static final class Telemetry {
+
+    // <> tried in order, the usb drive is only used if it's plugged in
+    // <> (the relative path is for simulation)
+    public static final String[] kLogDirectories = {
+      "/u/logs",
+      "/home/lvuser/logs",
+      "logs",
+    };
+
+    // <> ~10 seconds of loops can be queued before records get dropped
+    public static final int kQueueCapacityRecords = 512;
+
+    // <> the oldest logs are deleted at startup until the rest fit in this
+    public static final long kMaxLogDirectoryBytes = 256L * 1024 * 1024; // <> bytes
+
+    // <> how many counter suffixes to try when a log's name is already taken
+    public static final int kMaxNameAttempts = 1000;
+
+    // <> the writer thread writes at most this many records at once
+    public static final int kWriteBatchRecords = 64;
+
+    // <> how long the writer thread sleeps when there's nothing to write
+    public static final long kWriterIdleNanos = 20_000_000; // <> nanoseconds
+
+    // <> sample can bus utilization every 5 loops
+    public static final int kCANSamplePeriodCycles = 5; // <> cycles
+  }
+
   /** ++ constants for NEOs ------------------------------------------------------------- */
   public static final class NEOs {
 
     public static double maxNEORPM = 5500.0;
   }
+
+  /** <> constants for LOG REPLAY ------------------------------------------------------ */
+  public static final class Replay {
+
+    // <> a replayed output further than this from the recording is a divergence
+    public static final double kTolerance = 1e-6;
+  }
+
+  /** <> constants for the SCHEDULER SOAK (see SchedulerSoakTest) --------------------- */
+  public static final class Soak {
+
+    // <> 10 minutes of teleop and 5 of trajectories, the first loops of each
+    // <> don't count (the jit is still compiling)
+    public static final int kTeleopLoops = 30000; // <> loops
+    public static final int kTrajectoryLoops = 15000; // <> loops
+    public static final int kWarmupLoops = 2000; // <> loops
+
+    // <> allocation doesn't depend on the machine, so it's always checked
+    public static final long kMaxBytesPerLoop = 8192; // <> bytes
+
+    // <> loop time budgets on a dev machine, which is a lot faster than the
+    // <> rio, so these are for catching regressions, not for predicting the
+    // <> robot. max has room for a garbage collection. only checked when
+    // <> this system property is true ("./gradlew test -PsoakTiming")
+    public static final String kTimingProperty = "soak.timing";
+    public static final double kMaxP99Millis = 2.0; // <> milliseconds
+    public static final double kMaxLoopMillis = 20.0; // <> milliseconds
+  }
 }
@@ -6,8 +6,11 @@ import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType; 
+import java.util.function.DoubleSupplier;
 
 import frc.robot.Constants;
+import frc.robot.util.ShapingPipeline;
+import frc.robot.util.ShapingStages;
 
 /** ++ we'll use this class to write methods that help us process joystick inputs
 * and will mostly be for drive train things, and will include things like:
@@ -23,11 +26,49 @@ public final class JoyUtil extends XboxController {
     // ++ (((I'm not putting it here to avoid multiple versions of the "correct" order)))
 
 
+    // ++ the same functions as stages, built once per axis, see Constants.Joysticks.useShapingPipeline
+    // ++ the order is in makeDrivePipeline/makeRotationPipeline instead of composeDriveJoyFunctions
+    private final ShapingPipeline straightPipeline;
+    private final ShapingPipeline strafePipeline;
+    private final ShapingPipeline rotationPipeline;
+
     /** creates a new JoyUtil joystick.
      * @param controllerID
      */
     public JoyUtil(int controllerID) {
         super(controllerID);
+
+        straightPipeline = makeDrivePipeline(this::getFastModeMultiplier);
+        strafePipeline = makeDrivePipeline(this::getFastModeMultiplier);
+        rotationPipeline = makeRotationPipeline();
+    }
+
+    /** ++ deadzone, low pass filter, joy curve (as a table), rate limit, fast mode, damper
+     * @param fastModeMultiplier read every loop, see getFastModeMultiplier
+     */
+    public static ShapingPipeline makeDrivePipeline(DoubleSupplier fastModeMultiplier) {
+        return new ShapingPipeline(
+            new ShapingStages.Deadband(Constants.Joysticks.deadZoneSize),
+            new ShapingStages.LowPass(Constants.Joysticks.driveLowPassFilterStrength),
+            new ShapingStages.Curve(JoyUtil::joyCurve, Constants.Joysticks.curveTableSize),
+            new ShapingStages.RateLimit(Constants.Joysticks.driveRateLimit),
+            new ShapingStages.Scale(fastModeMultiplier),
+            new ShapingStages.Scale(Constants.DriveTrain.DriveConstants.kDrivingSpeedDamper)
+        );
+    }
+
+    /** ++ deadzone, low pass filter, damper (same as getRotationWithAdjustments) */
+    public static ShapingPipeline makeRotationPipeline() {
+        return new ShapingPipeline(
+            new ShapingStages.Deadband(Constants.Joysticks.deadZoneSize),
+            new ShapingStages.LowPass(Constants.Joysticks.rotationLowPassFilterStrength),
+            new ShapingStages.Scale(Constants.DriveTrain.DriveConstants.kAngularSpeedDamper)
+        );
+    }
+
+    /** ++ the fastMode multiplier for the triggers right now */
+    public double getFastModeMultiplier() {
+        return fastMode(1.0, getRightTriggerAxis() - getLeftTriggerAxis());
     }
 
 
@@ -72,6 +113,10 @@ public final class JoyUtil extends XboxController {
         prevFilteredX = 0.0;
         prevFilteredY = 0.0;
         prevFilteredR = 0.0;
+
+        straightPipeline.reset();
+        strafePipeline.reset();
+        rotationPipeline.reset();
     }
 
     
@@ -80,20 +125,27 @@ public final class JoyUtil extends XboxController {
     // ++ method that corresponds with the joystick you want. It also keeps track of the previous filtered value 
     public double getDriveStraightWithAdjustments(){
         double rawJoyPos = getLeftY(); // + (getDPadX()); 
+        if (Constants.Joysticks.useShapingPipeline) {
+            return straightPipeline.apply(rawJoyPos, Timer.getFPGATimestamp());
+        }
         double filterStrength = Constants.Joysticks.driveLowPassFilterStrength;
         double damperStrength = Constants.DriveTrain.DriveConstants.kDrivingSpeedDamper;
         double adjustedPos = composeDriveJoyFunctions(rawJoyPos, prevFilteredX, filterStrength, damperStrength);
 
-        // prevFilteredX = lowPassFilter(rawJoyPos, prevFilteredX, filterStrength);
+        // ++ remember what the filter output (after the deadzone, same as inside composeDriveJoyFunctions)
+        prevFilteredX = lowPassFilter(posWithDeadzone(rawJoyPos), prevFilteredX, filterStrength);
         return adjustedPos;
     }
     public double getDriveStrafeWithAdjustments(){
         double rawJoyPos = -getLeftX(); // + (getDPadY()); 
+        if (Constants.Joysticks.useShapingPipeline) {
+            return strafePipeline.apply(rawJoyPos, Timer.getFPGATimestamp());
+        }
         double filterStrength = Constants.Joysticks.driveLowPassFilterStrength;
         double damperStrength = Constants.DriveTrain.DriveConstants.kDrivingSpeedDamper;
         double adjustedPos = composeDriveJoyFunctions(rawJoyPos, prevFilteredY, filterStrength, damperStrength); 
 
-        // prevFilteredY = lowPassFilter(rawJoyPos, prevFilteredY, filterStrength);
+        prevFilteredY = lowPassFilter(posWithDeadzone(rawJoyPos), prevFilteredY, filterStrength);
         return adjustedPos;
     }
     public double getRotationWithAdjustments() {
@@ -102,9 +154,13 @@ public final class JoyUtil extends XboxController {
         
         // ++ the rotation axis is right x
         double rawJoyPos = getRightX();
+        if (Constants.Joysticks.useShapingPipeline) {
+            return rotationPipeline.apply(rawJoyPos, Timer.getFPGATimestamp());
+        }
         double filterStrength = Constants.Joysticks.rotationLowPassFilterStrength;
         double damperStrength = Constants.DriveTrain.DriveConstants.kAngularSpeedDamper;
-        double adjustedPos = ( lowPassFilter( posWithDeadzone(rawJoyPos), prevFilteredR, filterStrength) * damperStrength );
+        prevFilteredR = lowPassFilter( posWithDeadzone(rawJoyPos), prevFilteredR, filterStrength);
+        double adjustedPos = ( prevFilteredR * damperStrength );
         return adjustedPos;
     }
     //meah for mayor
@@ -170,6 +226,15 @@ public final class JoyUtil extends XboxController {
         // ++ IMPORTANT: please note that this function now shouldn't be called outside of this class-- this class used to be
         // ++ just full of methods, but it's now a wrapper class
 
+        // ++ the triggers are the only thing here that comes from the controller, the rest is just math
+        return composeDriveJoyFunctions(rawJoyPos, prevFilterJoy, filterStrength, damperStrength, (getRightTriggerAxis() - getLeftTriggerAxis()));
+    }
+
+    /** ++ the math half of the method above, static so it can be benchmarked without a controller plugged in
+     * @param fastmodeInput the trigger position used for fast mode
+     */
+    public static double composeDriveJoyFunctions(double rawJoyPos, double prevFilterJoy, double filterStrength, double damperStrength, double fastmodeInput){
+
         /* ++ this method will compose all the previous joy functions, so
         * THIS WILL BE THE ONLY METHOD USED for adjusting the drive joysticks
         *
@@ -188,7 +253,7 @@ public final class JoyUtil extends XboxController {
         double withDead = posWithDeadzone(rawJoyPos);
         double withFilter = lowPassFilter(withDead, prevFilterJoy, filterStrength);
         double withCurve = joyCurve(withFilter); 
-        double withSpeedMode = fastMode(withCurve, (getRightTriggerAxis() - getLeftTriggerAxis()));
+        double withSpeedMode = fastMode(withCurve, fastmodeInput);
         double withDamper = withSpeedMode * Constants.DriveTrain.DriveConstants.kDrivingSpeedDamper;
 
         double adjustedJoyPos = withDamper;
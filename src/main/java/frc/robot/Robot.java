@@ -4,8 +4,18 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.DriveTrain.ModuleConstants.StatusFrames;
+import frc.robot.subsystems.StatusFrameProfile;
+import frc.robot.util.CANBusMonitor;
+import frc.robot.util.InputLatencyTracker;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.TelemetryLog;
+import java.lang.management.ManagementFactory;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -17,15 +27,58 @@ public class Robot extends TimedRobot {
 
   private RobotContainer m_robotContainer;
 
+  // <> telemetry channels owned by the robot loop itself
+  private int m_loopTimeChannel;
+  private int m_droppedRecordsChannel;
+
   /**
    * This function is run when the robot is first started up and should be used for any
    * initialization code.
    */
   @Override
   public void robotInit() {
+    long start = System.nanoTime();
+
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
+
+    // <> everything registers its telemetry channels when it's constructed,
+    // <> so the log can start once the container exists
+    m_loopTimeChannel = TelemetryLog.getInstance().registerChannel("loop time ms");
+    m_droppedRecordsChannel =
+      TelemetryLog.getInstance().registerChannel("telemetry dropped records");
+    CANBusMonitor.getInstance();
+    TelemetryLog.getInstance().start();
+    InputLatencyTracker.getInstance().start();
+
+    reportBootTime((System.nanoTime() - start) / 1e6);
+  }
+
+  /**
+   * <> shows how long it took to get to "robot code ready", so slow boots
+   * (like every spark max getting reflashed) are easy to spot
+   */
+  private void reportBootTime(double robotInitMillis) {
+    // <> jvm uptime covers everything before robotInit too
+    double readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    double configureMillis = m_robotContainer.getDriveSubsystem().getConfigureMillis();
+    int reflashed = m_robotContainer.getDriveSubsystem().getReflashedControllers();
+
+    SmartDashboard.putNumber("Boot/code ready ms", readyMillis);
+    SmartDashboard.putNumber("Boot/robotInit ms", robotInitMillis);
+    SmartDashboard.putNumber("Boot/module config ms", configureMillis);
+    SmartDashboard.putNumber("Boot/reflashed controllers", reflashed);
+    DriverStation.reportWarning(
+      String.format(
+        "robot code ready after %.0f ms (robotInit %.0f ms, modules configured in %.0f ms, %d spark maxes reflashed)",
+        readyMillis,
+        robotInitMillis,
+        configureMillis,
+        reflashed
+      ),
+      false
+    );
   }
 
   /**
@@ -41,12 +94,40 @@ public class Robot extends TimedRobot {
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
+    // <> the profiler times the whole run so overruns can be blamed on a section
+    LoopProfiler.getInstance().beginCycle();
     CommandScheduler.getInstance().run();
+    LoopProfiler.getInstance().endCycle();
+
+    // <> one telemetry record per loop
+    TelemetryLog log = TelemetryLog.getInstance();
+    log.set(m_loopTimeChannel, LoopProfiler.getInstance().getLastCycleMillis());
+    log.set(m_droppedRecordsChannel, log.getDroppedRecords());
+    CANBusMonitor.getInstance().update();
+    InputLatencyTracker.getInstance().update();
+    log.commit(Timer.getFPGATimestamp());
+  }
+
+  /**
+   * <> swaps the drivetrain's status frame profiles when the mode changes, and
+   * starts charging bus utilization to the new profile
+   */
+  private void applyStatusFrames(
+    StatusFrameProfile driving,
+    StatusFrameProfile turning
+  ) {
+    if (!StatusFrames.kUseStatusFrameProfiles) {
+      return;
+    }
+    m_robotContainer.getDriveSubsystem().applyStatusFrames(driving, turning);
+    CANBusMonitor.getInstance().setLabel(driving.getName());
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
   @Override
-  public void disabledInit() {}
+  public void disabledInit() {
+    applyStatusFrames(StatusFrames.kDrivingDisabled, StatusFrames.kTurningDisabled);
+  }
 
   @Override
   public void disabledPeriodic() {}
@@ -54,7 +135,10 @@ public class Robot extends TimedRobot {
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
   public void autonomousInit() {
+    applyStatusFrames(StatusFrames.kDrivingAuto, StatusFrames.kTurningAuto);
 
+    // <> the spark maxes drop their setpoints while disabled
+    m_robotContainer.getDriveSubsystem().invalidateSetpoints();
   }
 
   /** This function is called periodically during autonomous. */
@@ -63,7 +147,10 @@ public class Robot extends TimedRobot {
 
   @Override
   public void teleopInit() {
+    applyStatusFrames(StatusFrames.kDrivingTeleop, StatusFrames.kTurningTeleop);
 
+    // <> the spark maxes drop their setpoints while disabled
+    m_robotContainer.getDriveSubsystem().invalidateSetpoints();
   }
 
   /** This function is called periodically during operator control. */
@@ -74,6 +161,13 @@ public class Robot extends TimedRobot {
   public void testInit() {
     // Cancels all running commands at the start of test mode.
     CommandScheduler.getInstance().cancelAll();
+
+    // <> test mode drives like teleop (characterization swaps in its own
+    // <> profile while a test runs)
+    applyStatusFrames(StatusFrames.kDrivingTeleop, StatusFrames.kTurningTeleop);
+
+    // <> the spark maxes drop their setpoints while disabled
+    m_robotContainer.getDriveSubsystem().invalidateSetpoints();
   }
 
   /** This function is called periodically during test mode. */
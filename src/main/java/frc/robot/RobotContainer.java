@@ -6,23 +6,21 @@ package frc.robot;
 
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
-import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
-import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.SwerveControllerCommand;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.robot.Constants.DriveTrain.DriveConstants;
 import frc.robot.Constants.DriveTrain.DriveConstants.ChasisKinematics;
+import frc.robot.commands.DriveCharacterizationCommand;
+import frc.robot.commands.DriveToPoseCommand;
 import frc.robot.commands.SwerveTeleopCommand;
 import frc.robot.commands.SwerveTrajectoryFollowCommand;
 import frc.robot.subsystems.DriveSubsystem;
-import java.util.List;
+import frc.robot.util.TrajectoryCache;
 
 /**
  * This class is where the bulk of the robot should be declared. Since
@@ -47,6 +45,28 @@ public class RobotContainer {
     primaryController,
     Constants.Joysticks.A
   );
+  public static JoystickButton primaryBButton = new JoystickButton(
+    primaryController,
+    Constants.Joysticks.B
+  );
+
+  // <> characterization buttons, only in test mode (see configureBindings)
+  public static JoystickButton secondaryAButton = new JoystickButton(
+    secondaryController,
+    Constants.Joysticks.A
+  );
+  public static JoystickButton secondaryBButton = new JoystickButton(
+    secondaryController,
+    Constants.Joysticks.B
+  );
+  public static JoystickButton secondaryXButton = new JoystickButton(
+    secondaryController,
+    Constants.Joysticks.X
+  );
+  public static JoystickButton secondaryYButton = new JoystickButton(
+    secondaryController,
+    Constants.Joysticks.Y
+  );
 
   // The robot's subsystems and commands are defined here...
   // ++ ----- SUBSYSTEMS -----------
@@ -54,6 +74,10 @@ public class RobotContainer {
 
   // ++ ----- COMMANDS -------------
   private final SwerveTrajectoryFollowCommand m_SwerveTrajectoryFollowCommand;
+  private final DriveToPoseCommand m_DriveToPoseCommand = new DriveToPoseCommand(
+    m_driveSubsystem,
+    () -> DriveConstants.AutoConstants.kDriveToPoseTarget
+  );
   private final SwerveTeleopCommand m_SwerveTeleopCommand = new SwerveTeleopCommand(
     m_driveSubsystem,
     primaryController
@@ -63,11 +87,9 @@ public class RobotContainer {
    * The container for the robot. Contains subsystems, OI devices, and commands.
    */
   public RobotContainer() {
-    Trajectory trajectory = TrajectoryGenerator.generateTrajectory(
-      new Pose2d(0, 0, new Rotation2d(0)),
-      List.of(new Translation2d(-0.5, 0.5)),
-      new Pose2d(-2, 0, Rotation2d.fromDegrees(90)),
-      DriveConstants.AutoConstants.trajectoryConfig
+    // <> loaded from the deploy directory instead of generated at boot
+    Trajectory trajectory = TrajectoryCache.get(
+      DriveConstants.AutoConstants.Paths.kTestPath
     );
 
     ProfiledPIDController thetaPidController = new ProfiledPIDController(
@@ -107,6 +129,31 @@ public class RobotContainer {
    */
   public void configureBindings() {
     primaryAButton.onTrue(m_SwerveTrajectoryFollowCommand);
+    // <> trajectory is generated off the main thread, release B to cancel
+    primaryBButton.whileTrue(m_DriveToPoseCommand);
+
+    // <> feedforward characterization, hold to run (test mode only so it
+    // <> can't go off in a match)
+    secondaryAButton
+      .and(DriverStation::isTest)
+      .whileTrue(characterization(DriveCharacterizationCommand.Test.kQuasistaticForward));
+    secondaryBButton
+      .and(DriverStation::isTest)
+      .whileTrue(characterization(DriveCharacterizationCommand.Test.kQuasistaticReverse));
+    secondaryXButton
+      .and(DriverStation::isTest)
+      .whileTrue(characterization(DriveCharacterizationCommand.Test.kDynamicForward));
+    secondaryYButton
+      .and(DriverStation::isTest)
+      .whileTrue(characterization(DriveCharacterizationCommand.Test.kDynamicReverse));
+  }
+
+  private Command characterization(DriveCharacterizationCommand.Test test) {
+    return new DriveCharacterizationCommand(m_driveSubsystem, test);
+  }
+
+  public DriveSubsystem getDriveSubsystem() {
+    return m_driveSubsystem;
   }
 
   public Command getAutonomousCommand() {
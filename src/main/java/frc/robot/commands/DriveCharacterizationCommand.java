@@ -0,0 +1,221 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.DriveTrain.DriveConstants.Characterization;
+import frc.robot.Constants.DriveTrain.ModuleConstants.StatusFrames;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.StatusFrameProfile;
+import frc.robot.util.CANBusMonitor;
+import frc.robot.util.FeedforwardFitter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <> runs one feedforward characterization test on the driving motors with
+ * the wheels held straight. a notifier sets the voltage and captures every
+ * module's applied volts, position and velocity much faster than the robot
+ * loop, straight into a buffer that's allocated up front. when the test ends
+ * the capture is written out as csv and fit (together with every other test
+ * run since boot) on a background thread, and kS/kV/kA go to the dashboard
+ *
+ * <p><> run each test once in each direction with plenty of room (hold the
+ * button, let go to stop early)
+ */
+public class DriveCharacterizationCommand extends CommandBase {
+
+  /** <> the four standard tests */
+  public enum Test {
+    kQuasistaticForward("quasistatic_forward", true, 1),
+    kQuasistaticReverse("quasistatic_reverse", true, -1),
+    kDynamicForward("dynamic_forward", false, 1),
+    kDynamicReverse("dynamic_reverse", false, -1);
+
+    private final String m_name;
+    private final boolean m_quasistatic;
+    private final double m_direction;
+
+    Test(String name, boolean quasistatic, double direction) {
+      m_name = name;
+      m_quasistatic = quasistatic;
+      m_direction = direction;
+    }
+
+    // <> voltage to apply this far into the test
+    private double volts(double elapsedSeconds) {
+      return m_direction * (
+        m_quasistatic
+          ? Characterization.kQuasistaticVoltsPerSecond * elapsedSeconds
+          : Characterization.kDynamicStepVolts
+      );
+    }
+  }
+
+  // <> one low priority thread for writing and fitting, so the robot loop
+  // <> never waits on the disk
+  private static final ExecutorService kFlusher = Executors.newSingleThreadExecutor(
+    runnable -> {
+      Thread thread = new Thread(runnable, "characterization writer");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  );
+
+  // <> every capture since boot, only touched on the flusher thread
+  private static final FeedforwardFitter kSessionFit = new FeedforwardFitter();
+
+  private final DriveSubsystem m_subsystem;
+  private final Test m_test;
+  private final Notifier m_notifier = new Notifier(this::capture);
+
+  // <> the capture, see FeedforwardFitter for the row layout
+  private final double[] m_buffer = new double[
+    Characterization.kMaxSamples * FeedforwardFitter.kRowWidth
+  ];
+
+  // <> capture() and end() both drive the modules, this keeps them apart
+  private final Object m_lock = new Object();
+  private boolean m_running = false;
+  private double m_startTime = 0;
+  private volatile int m_samples = 0;
+
+  // <> profiles to go back to when the test ends
+  private StatusFrameProfile m_previousDriving = null;
+  private StatusFrameProfile m_previousTurning = null;
+
+  /**
+   * <> construct a characterization test
+   *
+   * @param subsystem the drivetrain
+   * @param test      which test to run
+   */
+  public DriveCharacterizationCommand(DriveSubsystem subsystem, Test test) {
+    m_subsystem = subsystem;
+    m_test = test;
+    m_notifier.setName("characterization " + test.m_name);
+
+    addRequirements(subsystem);
+  }
+
+  @Override
+  public void initialize() {
+    // <> whatever mode the robot is in, its status frames are too slow to
+    // <> capture at this rate, and the spark maxes dropped their setpoints
+    // <> when they were disabled
+    m_previousDriving = m_subsystem.getDrivingStatusFrames();
+    m_previousTurning = m_subsystem.getTurningStatusFrames();
+    applyStatusFrames(
+      StatusFrames.kDrivingCharacterization,
+      StatusFrames.kTurningCharacterization
+    );
+    m_subsystem.invalidateSetpoints();
+
+    synchronized (m_lock) {
+      m_samples = 0;
+      m_startTime = Timer.getFPGATimestamp();
+      m_running = true;
+    }
+    m_notifier.startPeriodic(Characterization.kCapturePeriodSeconds);
+  }
+
+  // <> runs on the notifier's thread, nothing in here allocates
+  private void capture() {
+    synchronized (m_lock) {
+      if (!m_running || m_samples == Characterization.kMaxSamples) {
+        return;
+      }
+      double now = Timer.getFPGATimestamp();
+      m_subsystem.setDriveVoltage(m_test.volts(now - m_startTime));
+
+      int row = m_samples * FeedforwardFitter.kRowWidth;
+      m_buffer[row] = now;
+      m_subsystem.sampleCharacterization(m_buffer, row + 1);
+      m_samples++;
+    }
+  }
+
+  @Override
+  public boolean isFinished() {
+    return (
+      m_samples == Characterization.kMaxSamples ||
+      Timer.getFPGATimestamp() - m_startTime > Characterization.kMaxTestSeconds
+    );
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    m_notifier.stop();
+    int samples;
+    synchronized (m_lock) {
+      m_running = false;
+      m_subsystem.stopModules();
+      samples = m_samples;
+    }
+    // <> whatever runs next shouldn't have its setpoints suppressed
+    m_subsystem.invalidateSetpoints();
+    if (m_previousDriving != null && m_previousTurning != null) {
+      applyStatusFrames(m_previousDriving, m_previousTurning);
+    }
+
+    double[] capture = Arrays.copyOf(
+      m_buffer,
+      samples * FeedforwardFitter.kRowWidth
+    );
+    String name = m_test.m_name;
+    kFlusher.submit(() -> flush(name, capture, samples));
+  }
+
+  // <> same as Robot does on a mode change
+  private void applyStatusFrames(
+    StatusFrameProfile driving,
+    StatusFrameProfile turning
+  ) {
+    if (!StatusFrames.kUseStatusFrameProfiles) {
+      return;
+    }
+    m_subsystem.applyStatusFrames(driving, turning);
+    CANBusMonitor.getInstance().setLabel(driving.getName());
+  }
+
+  // <> runs on the flusher thread
+  private static void flush(String test, double[] capture, int samples) {
+    try {
+      Path csv = FeedforwardFitter.write(test, capture, samples);
+      DriverStation.reportWarning(
+        "characterization " + test + ": " + samples + " samples written to " + csv,
+        false
+      );
+    } catch (IOException e) {
+      DriverStation.reportWarning(
+        "characterization " + test + " couldn't be written: " + e.getMessage(),
+        false
+      );
+    }
+
+    kSessionFit.add(capture, samples);
+    FeedforwardFitter.Result result = kSessionFit.fit();
+    if (result == null) {
+      DriverStation.reportWarning(
+        "characterization: not enough data to fit yet, run the other tests",
+        false
+      );
+      return;
+    }
+    SmartDashboard.putNumber("Characterization/kS", result.kS);
+    SmartDashboard.putNumber("Characterization/kV", result.kV);
+    SmartDashboard.putNumber("Characterization/kA", result.kA);
+    SmartDashboard.putNumber("Characterization/r squared", result.rSquared);
+    DriverStation.reportWarning("characterization fit: " + result, false);
+  }
+}
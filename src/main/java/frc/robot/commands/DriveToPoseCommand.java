@@ -0,0 +1,221 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.DriveTrain.DriveConstants.AutoConstants;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.util.CompiledTrajectory;
+import frc.robot.util.LoopProfiler;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * <> drives from wherever the robot is to a target pose. the trajectory is
+ * generated on a background thread (spline generation can take longer than a
+ * whole loop), and the modules are held still until it's ready. then a
+ * {@link SwerveTrajectoryFollowCommand} is run inline to follow it
+ *
+ * <p><> the target is re-read every loop, if it changes (the driver retargets)
+ * the pending trajectory is thrown away and a new one is planned from the
+ * robot's current pose
+ */
+public class DriveToPoseCommand extends CommandBase {
+
+  // <> closer than this to the target and there's nothing to do
+  private static final double kMinDistanceMeters = 0.01;
+
+  // <> one low priority thread shared by every instance. single threaded so a
+  // <> cancelled request that hasn't started yet never runs at all
+  private static final ExecutorService kGenerator = Executors.newSingleThreadExecutor(
+    runnable -> {
+      Thread thread = new Thread(runnable, "trajectory generator");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  );
+
+  private final DriveSubsystem m_subsystem;
+  private final Supplier<Pose2d> m_targetSupplier;
+  private final ProfiledPIDController m_thetaController;
+
+  private Pose2d m_target;
+  private Future<CompiledTrajectory> m_pending;
+  private SwerveTrajectoryFollowCommand m_follower;
+  private boolean m_failed;
+
+  // <> profiler section for execute()
+  private final int m_profilerSection = LoopProfiler
+    .getInstance()
+    .register("DriveToPoseCommand");
+
+  /**
+   * <> creates a new DriveToPoseCommand
+   *
+   * @param subsystem      the drivetrain
+   * @param targetSupplier where to go, checked every loop for retargets
+   */
+  public DriveToPoseCommand(
+    DriveSubsystem subsystem,
+    Supplier<Pose2d> targetSupplier
+  ) {
+    m_subsystem = subsystem;
+    m_targetSupplier = targetSupplier;
+
+    m_thetaController =
+      new ProfiledPIDController(
+        AutoConstants.kTurningP,
+        0,
+        0,
+        AutoConstants.kThetaControllerConstraints
+      );
+    m_thetaController.enableContinuousInput(-Math.PI, Math.PI);
+
+    addRequirements(subsystem);
+  }
+
+  @Override
+  public void initialize() {
+    m_failed = false;
+    plan(m_targetSupplier.get());
+  }
+
+  @Override
+  public void execute() {
+    LoopProfiler.getInstance().start(m_profilerSection);
+
+    // <> driver retargeted, whatever is pending or running is stale now
+    Pose2d target = m_targetSupplier.get();
+    if (!target.equals(m_target)) {
+      plan(target);
+    }
+
+    if (m_follower == null && m_pending != null && m_pending.isDone()) {
+      startFollowing();
+    }
+
+    if (m_follower != null) {
+      m_follower.execute();
+    } else {
+      m_subsystem.stopModules();
+    }
+
+    LoopProfiler.getInstance().stop(m_profilerSection);
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    cancel();
+    m_subsystem.stopModules();
+  }
+
+  @Override
+  public boolean isFinished() {
+    if (m_failed) {
+      return true;
+    }
+    if (m_follower != null) {
+      return m_follower.isFinished();
+    }
+    // <> nothing pending means the robot was already there
+    return m_pending == null;
+  }
+
+  /** <> throws away anything pending or running, then starts planning */
+  private void plan(Pose2d target) {
+    cancel();
+    m_target = target;
+
+    Pose2d start = m_subsystem.getPose();
+    Translation2d delta = target
+      .getTranslation()
+      .minus(start.getTranslation());
+    if (delta.getNorm() < kMinDistanceMeters) {
+      return;
+    }
+
+    // <> trajectory headings are the direction of travel (a straight line),
+    // <> the follower turns the robot to the target's rotation separately
+    Rotation2d travel = new Rotation2d(delta.getX(), delta.getY());
+    Pose2d splineStart = new Pose2d(start.getTranslation(), travel);
+    Pose2d splineEnd = new Pose2d(target.getTranslation(), travel);
+
+    m_pending =
+      kGenerator.submit(() -> {
+        long startNanos = System.nanoTime();
+        Trajectory trajectory = TrajectoryGenerator.generateTrajectory(
+          splineStart,
+          List.of(),
+          splineEnd,
+          AutoConstants.trajectoryConfig
+        );
+        // <> compiling samples the whole trajectory, so it's done here too
+        CompiledTrajectory compiled = new CompiledTrajectory(
+          trajectory,
+          AutoConstants.kCompiledTrajectoryDtSeconds
+        );
+        SmartDashboard.putNumber(
+          "DriveToPose/generation ms",
+          (System.nanoTime() - startNanos) / 1e6
+        );
+        return compiled;
+      });
+  }
+
+  /** <> the pending trajectory is done, hand it to a follower */
+  private void startFollowing() {
+    CompiledTrajectory trajectory;
+    try {
+      trajectory = m_pending.get();
+    } catch (ExecutionException | CancellationException e) {
+      DriverStation.reportError(
+        "drive to pose trajectory generation failed: " + e.getMessage(),
+        false
+      );
+      m_pending = null;
+      m_failed = true;
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    m_pending = null;
+
+    Rotation2d targetRotation = m_target.getRotation();
+    m_follower =
+      new SwerveTrajectoryFollowCommand(
+        m_subsystem,
+        trajectory,
+        m_thetaController,
+        () -> targetRotation
+      );
+    m_follower.initialize();
+  }
+
+  private void cancel() {
+    if (m_pending != null) {
+      m_pending.cancel(false);
+      m_pending = null;
+    }
+    if (m_follower != null) {
+      m_follower.end(true);
+      m_follower = null;
+    }
+  }
+}
@@ -5,11 +5,14 @@
 package frc.robot.commands;
 
 import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.robot.Constants.DriveTrain.DriveConstants;
 import frc.robot.JoyUtil;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.util.InputLatencyTracker;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.TelemetryLog;
 
 public class SwerveTeleopCommand extends CommandBase {
 
@@ -19,11 +22,42 @@ public class SwerveTeleopCommand extends CommandBase {
   // <> driver joyutil
   private final JoyUtil controller;
 
+  // <> profiler section for execute()
+  private final int m_profilerSection = LoopProfiler
+    .getInstance()
+    .register("SwerveTeleopCommand");
+
+  // <> telemetry channel handles
+  private final int m_leftXChannel;
+  private final int m_leftYChannel;
+  private final int m_rightXChannel;
+  private final int m_triggersChannel;
+  private final int m_leftTriggerChannel;
+  private final int m_rightTriggerChannel;
+  private final int m_povChannel;
+  private final int m_executionsChannel;
+  private final int m_xSpeedChannel;
+  private final int m_ySpeedChannel;
+  private final int m_rotChannel;
+
   /** Creates a new SwerveTeleopCommand. */
   public SwerveTeleopCommand(DriveSubsystem subsystem, JoyUtil controller) {
     m_DriveSubsystem = subsystem;
     this.controller = controller;
 
+    TelemetryLog log = TelemetryLog.getInstance();
+    m_leftXChannel = log.registerChannel("teleop/left x");
+    m_leftYChannel = log.registerChannel("teleop/left y");
+    m_rightXChannel = log.registerChannel("teleop/right x");
+    m_triggersChannel = log.registerChannel("teleop/triggers");
+    m_leftTriggerChannel = log.registerChannel(LogReplay.kLeftTriggerChannel);
+    m_rightTriggerChannel = log.registerChannel(LogReplay.kRightTriggerChannel);
+    m_povChannel = log.registerChannel(LogReplay.kPOVChannel);
+    m_executionsChannel = log.registerChannel(LogReplay.kTeleopExecutionsChannel);
+    m_xSpeedChannel = log.registerChannel("teleop/x speed");
+    m_ySpeedChannel = log.registerChannel("teleop/y speed");
+    m_rotChannel = log.registerChannel("teleop/rot");
+
     // Use addRequirements() here to declare subsystem dependencies.
     addRequirements(subsystem);
   }
@@ -35,16 +69,35 @@ public class SwerveTeleopCommand extends CommandBase {
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
+    LoopProfiler.getInstance().start(m_profilerSection);
+
     // <> drive the drivetrain with the controller's input
-    m_DriveSubsystem.drive(
-      controller.getDriveStraightWithAdjustments(),
-      -controller.getDriveStrafeWithAdjustments(),
-      MathUtil.applyDeadband(controller.getRightX(), 0.09),
-      DriveConstants.kFieldRelative
+    InputLatencyTracker.getInstance().markRead();
+    double xSpeed = controller.getDriveStraightWithAdjustments();
+    double ySpeed = -controller.getDriveStrafeWithAdjustments();
+    double rot = MathUtil.applyDeadband(controller.getRightX(), 0.09);
+    InputLatencyTracker.getInstance().markShaped();
+    m_DriveSubsystem.drive(xSpeed, ySpeed, rot, DriveConstants.kFieldRelative);
+
+    // <> debug (the pose itself is logged by the drive subsystem)
+    TelemetryLog log = TelemetryLog.getInstance();
+    log.set(m_leftXChannel, controller.getLeftX());
+    log.set(m_leftYChannel, controller.getLeftY());
+    log.set(m_rightXChannel, controller.getRightX());
+    log.set(
+      m_triggersChannel,
+      controller.getRightTriggerAxis() - controller.getLeftTriggerAxis()
     );
+    log.set(m_leftTriggerChannel, controller.getLeftTriggerAxis());
+    log.set(m_rightTriggerChannel, controller.getRightTriggerAxis());
+    log.set(m_povChannel, controller.getPOV());
+    // <> counts up every execute, so a replay knows which loops this ran in
+    log.set(m_executionsChannel, log.get(m_executionsChannel) + 1);
+    log.set(m_xSpeedChannel, xSpeed);
+    log.set(m_ySpeedChannel, ySpeed);
+    log.set(m_rotChannel, rot);
 
-    // <> debug
-    SmartDashboard.putNumber("odometry pose translation x", m_DriveSubsystem.getPose().getTranslation().getX());
+    LoopProfiler.getInstance().stop(m_profilerSection);
   }
 
   // Called once the command ends or is interrupted.
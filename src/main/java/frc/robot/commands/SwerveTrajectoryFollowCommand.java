@@ -4,17 +4,54 @@
 
 package frc.robot.commands;
 
+import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
-import edu.wpi.first.wpilibj2.command.SwerveControllerCommand;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.robot.Constants.DriveTrain.DriveConstants.AutoConstants;
-import frc.robot.Constants.DriveTrain.DriveConstants.ChasisKinematics;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.util.CompiledTrajectory;
+import frc.robot.util.LoopProfiler;
+import java.util.function.Supplier;
 
-/// <> just a wrapper for a SwerveControllerCommand with an edited constructor
-public class SwerveTrajectoryFollowCommand extends SwerveControllerCommand {
+/**
+ * <> follows a trajectory with the same control law as wpilib's
+ * SwerveControllerCommand (feedforward from the trajectory plus pid on x, y
+ * and a profiled pid on rotation), but samples a {@link CompiledTrajectory}
+ * so nothing is searched or allocated to find where the robot should be,
+ * and drives through {@link DriveSubsystem#setChassisSpeeds(double, double,
+ * double)} so nothing is allocated to get there either
+ */
+public class SwerveTrajectoryFollowCommand extends CommandBase {
 
   private final DriveSubsystem m_subsystem;
+  private final CompiledTrajectory m_trajectory;
+  private final Supplier<Rotation2d> m_desiredRotation;
+
+  private final PIDController m_xController = new PIDController(
+    AutoConstants.kMovementP,
+    0,
+    0
+  );
+  private final PIDController m_yController = new PIDController(
+    AutoConstants.kMovementP,
+    0,
+    0
+  );
+  private final ProfiledPIDController m_thetaController;
+
+  private final Timer m_timer = new Timer();
+
+  // <> reused every loop
+  private final double[] m_sample = new double[CompiledTrajectory.kSampleSize];
+  private final double[] m_pose = new double[3];
+
+  // <> profiler section for execute()
+  private final int m_profilerSection = LoopProfiler
+    .getInstance()
+    .register("SwerveTrajectoryFollowCommand");
 
   /** Creates a new SwerveTrajectoryFollowCommand. */
   // <> requires a theta pid controller because enable
@@ -24,16 +61,109 @@ public class SwerveTrajectoryFollowCommand extends SwerveControllerCommand {
     Trajectory trajectory,
     ProfiledPIDController thetaPidController
   ) {
-    super(
+    this(
+      subsystem,
+      new CompiledTrajectory(
+        trajectory,
+        AutoConstants.kCompiledTrajectoryDtSeconds
+      ),
+      thetaPidController
+    );
+  }
+
+  /**
+   * <> follows an already compiled trajectory, facing its final heading
+   */
+  public SwerveTrajectoryFollowCommand(
+    DriveSubsystem subsystem,
+    CompiledTrajectory trajectory,
+    ProfiledPIDController thetaPidController
+  ) {
+    this(
+      subsystem,
       trajectory,
-      subsystem::getPose,
-      ChasisKinematics.kDriveKinematics,
-      AutoConstants.movementPidController,
-      AutoConstants.movementPidController,
       thetaPidController,
-      subsystem::setModuleStates,
-      subsystem
+      constant(new Rotation2d(trajectory.getEndHeadingRadians()))
     );
+  }
+
+  /**
+   * <> same as above, but the robot turns to face desiredRotation instead of
+   * the trajectory's final heading (used when a trajectory's headings are the
+   * direction of travel rather than where the robot should face)
+   */
+  public SwerveTrajectoryFollowCommand(
+    DriveSubsystem subsystem,
+    CompiledTrajectory trajectory,
+    ProfiledPIDController thetaPidController,
+    Supplier<Rotation2d> desiredRotation
+  ) {
     m_subsystem = subsystem;
+    m_trajectory = trajectory;
+    m_thetaController = thetaPidController;
+    m_desiredRotation = desiredRotation;
+
+    addRequirements(subsystem);
+  }
+
+  // <> so the lambda doesn't capture a constructor parameter
+  private static Supplier<Rotation2d> constant(Rotation2d rotation) {
+    return () -> rotation;
+  }
+
+  @Override
+  public void initialize() {
+    m_subsystem.getPose(m_pose);
+    m_thetaController.reset(m_pose[2]);
+    m_xController.reset();
+    m_yController.reset();
+
+    m_timer.reset();
+    m_timer.start();
+  }
+
+  @Override
+  public void execute() {
+    LoopProfiler.getInstance().start(m_profilerSection);
+
+    m_trajectory.sample(m_timer.get(), m_sample);
+    m_subsystem.getPose(m_pose);
+
+    // <> field relative feedforward along the path plus position feedback
+    double heading = m_sample[CompiledTrajectory.kHeading];
+    double velocity = m_sample[CompiledTrajectory.kVelocity];
+    double xSpeed =
+      velocity *
+      Math.cos(heading) +
+      m_xController.calculate(m_pose[0], m_sample[CompiledTrajectory.kX]);
+    double ySpeed =
+      velocity *
+      Math.sin(heading) +
+      m_yController.calculate(m_pose[1], m_sample[CompiledTrajectory.kY]);
+    double rot = m_thetaController.calculate(
+      m_pose[2],
+      m_desiredRotation.get().getRadians()
+    );
+
+    // <> field relative to robot relative
+    double cos = Math.cos(m_pose[2]);
+    double sin = Math.sin(m_pose[2]);
+    m_subsystem.setChassisSpeeds(
+      xSpeed * cos + ySpeed * sin,
+      -xSpeed * sin + ySpeed * cos,
+      rot
+    );
+
+    LoopProfiler.getInstance().stop(m_profilerSection);
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    m_timer.stop();
+  }
+
+  @Override
+  public boolean isFinished() {
+    return m_timer.hasElapsed(m_trajectory.getTotalTimeSeconds());
   }
 }
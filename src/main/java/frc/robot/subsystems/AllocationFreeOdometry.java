@@ -0,0 +1,220 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * <> swerve odometry that only works with primitives, so updating it every
+ * loop doesn't create any garbage. does the same math as wpilib's
+ * SwerveDriveOdometry: module deltas go through forward kinematics to get a
+ * twist, the gyro supplies the change in heading, and the twist is applied
+ * with the pose exponential
+ */
+public class AllocationFreeOdometry {
+
+  private final int m_numModules;
+
+  // <> rows of the forward kinematics matrix (pseudo-inverse of the inverse
+  // <> kinematics), interleaved as [x0, y0, x1, y1, ...] module deltas
+  private final double[] m_forwardX;
+  private final double[] m_forwardY;
+
+  private final double[] m_previousDistances;
+
+  // <> current pose
+  private double m_x;
+  private double m_y;
+  private double m_theta;
+
+  // <> difference between the robot's heading and the raw gyro angle
+  private double m_gyroOffset;
+
+  // <> only built when someone asks for it
+  private Pose2d m_pose;
+
+  /**
+   * <> construct odometry for a set of modules
+   *
+   * @param moduleTranslations   module locations relative to the robot center
+   * @param gyroRadians          current gyro angle
+   * @param distancesMeters      current module distances
+   * @param initialPose          starting pose on the field
+   */
+  public AllocationFreeOdometry(
+    Translation2d[] moduleTranslations,
+    double gyroRadians,
+    double[] distancesMeters,
+    Pose2d initialPose
+  ) {
+    m_numModules = moduleTranslations.length;
+    m_forwardX = new double[m_numModules * 2];
+    m_forwardY = new double[m_numModules * 2];
+    m_previousDistances = new double[m_numModules];
+
+    // <> the inverse kinematics matrix has rows [1, 0, -y] and [0, 1, x] for
+    // <> every module, so the normal matrix (A^T A) is built by hand here
+    double sumX = 0;
+    double sumY = 0;
+    double sumSquares = 0;
+    for (Translation2d translation : moduleTranslations) {
+      sumX += translation.getX();
+      sumY += translation.getY();
+      sumSquares +=
+        translation.getX() * translation.getX() +
+        translation.getY() * translation.getY();
+    }
+    double[][] inverse = invert3x3(
+      new double[][] {
+        { m_numModules, 0, -sumY },
+        { 0, m_numModules, sumX },
+        { -sumY, sumX, sumSquares },
+      }
+    );
+
+    // <> pseudo-inverse = (A^T A)^-1 A^T, only the x and y rows are needed
+    // <> because the heading comes from the gyro
+    for (int i = 0; i < m_numModules; i++) {
+      double moduleX = moduleTranslations[i].getX();
+      double moduleY = moduleTranslations[i].getY();
+      m_forwardX[i * 2] = inverse[0][0] - inverse[0][2] * moduleY;
+      m_forwardX[i * 2 + 1] = inverse[0][1] + inverse[0][2] * moduleX;
+      m_forwardY[i * 2] = inverse[1][0] - inverse[1][2] * moduleY;
+      m_forwardY[i * 2 + 1] = inverse[1][1] + inverse[1][2] * moduleX;
+    }
+
+    resetPosition(gyroRadians, distancesMeters, initialPose);
+  }
+
+  /**
+   * <> resets the odometry to the specified pose
+   *
+   * @param gyroRadians     current gyro angle
+   * @param distancesMeters current module distances
+   * @param pose            pose to set the odometry to
+   */
+  public void resetPosition(
+    double gyroRadians,
+    double[] distancesMeters,
+    Pose2d pose
+  ) {
+    m_x = pose.getX();
+    m_y = pose.getY();
+    m_theta = pose.getRotation().getRadians();
+    m_gyroOffset = m_theta - gyroRadians;
+    System.arraycopy(distancesMeters, 0, m_previousDistances, 0, m_numModules);
+    m_pose = pose;
+  }
+
+  /**
+   * <> updates the pose from new gyro and module readings without allocating
+   *
+   * @param gyroRadians     current gyro angle
+   * @param distancesMeters current module distances
+   * @param anglesRadians   current module angles
+   */
+  public void update(
+    double gyroRadians,
+    double[] distancesMeters,
+    double[] anglesRadians
+  ) {
+    // <> forward kinematics on the module deltas
+    double dx = 0;
+    double dy = 0;
+    for (int i = 0; i < m_numModules; i++) {
+      double delta = distancesMeters[i] - m_previousDistances[i];
+      m_previousDistances[i] = distancesMeters[i];
+
+      double moduleDx = delta * Math.cos(anglesRadians[i]);
+      double moduleDy = delta * Math.sin(anglesRadians[i]);
+      dx += m_forwardX[i * 2] * moduleDx + m_forwardX[i * 2 + 1] * moduleDy;
+      dy += m_forwardY[i * 2] * moduleDx + m_forwardY[i * 2 + 1] * moduleDy;
+    }
+
+    double theta = gyroRadians + m_gyroOffset;
+    double dtheta = MathUtil.angleModulus(theta - m_theta);
+
+    // <> pose exponential (same as Pose2d.exp)
+    double sinTheta = Math.sin(dtheta);
+    double cosTheta = Math.cos(dtheta);
+    double s;
+    double c;
+    if (Math.abs(dtheta) < 1E-9) {
+      s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+      c = 0.5 * dtheta;
+    } else {
+      s = sinTheta / dtheta;
+      c = (1 - cosTheta) / dtheta;
+    }
+    double localX = dx * s - dy * c;
+    double localY = dx * c + dy * s;
+
+    // <> rotate the movement into the field frame using the previous heading
+    double cosHeading = Math.cos(m_theta);
+    double sinHeading = Math.sin(m_theta);
+    m_x += localX * cosHeading - localY * sinHeading;
+    m_y += localX * sinHeading + localY * cosHeading;
+    m_theta = theta;
+
+    m_pose = null;
+  }
+
+  /** @return x position in meters */
+  public double getX() {
+    return m_x;
+  }
+
+  /** @return y position in meters */
+  public double getY() {
+    return m_y;
+  }
+
+  /** @return heading in radians */
+  public double getThetaRadians() {
+    return m_theta;
+  }
+
+  /**
+   * <> builds a pose the first time it's asked for after an update, so
+   * callers that only need primitives never allocate
+   *
+   * @return the pose
+   */
+  public Pose2d getPoseMeters() {
+    if (m_pose == null) {
+      m_pose = new Pose2d(m_x, m_y, new Rotation2d(m_theta));
+    }
+    return m_pose;
+  }
+
+  // <> plain cofactor inverse, only ever called once at construction
+  private static double[][] invert3x3(double[][] m) {
+    double c00 = m[1][1] * m[2][2] - m[1][2] * m[2][1];
+    double c01 = m[1][2] * m[2][0] - m[1][0] * m[2][2];
+    double c02 = m[1][0] * m[2][1] - m[1][1] * m[2][0];
+    double determinant = m[0][0] * c00 + m[0][1] * c01 + m[0][2] * c02;
+
+    return new double[][] {
+      {
+        c00 / determinant,
+        (m[0][2] * m[2][1] - m[0][1] * m[2][2]) / determinant,
+        (m[0][1] * m[1][2] - m[0][2] * m[1][1]) / determinant,
+      },
+      {
+        c01 / determinant,
+        (m[0][0] * m[2][2] - m[0][2] * m[2][0]) / determinant,
+        (m[0][2] * m[1][0] - m[0][0] * m[1][2]) / determinant,
+      },
+      {
+        c02 / determinant,
+        (m[0][1] * m[2][0] - m[0][0] * m[2][1]) / determinant,
+        (m[0][0] * m[1][1] - m[0][1] * m[1][0]) / determinant,
+      },
+    };
+  }
+}
@@ -0,0 +1,374 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.DriveTrain.DriveConstants;
+import frc.robot.Constants.DriveTrain.DriveConstants.ControlLoop;
+import frc.robot.util.LoopHistogram;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * <> runs the drivetrain's kinematics, desaturation and module commands on
+ * its own high priority notifier thread at a fixed rate, so a slow command or
+ * periodic() can't hold up the modules. commands don't touch the modules,
+ * they post an intent (chassis speeds, module states, stop, X) that the loop
+ * picks up on its next tick
+ *
+ * <p><> the intent is handed over seqlock style: a writer bumps the sequence
+ * to odd, writes, and bumps it to even, and the loop copies the intent and
+ * tries again if the sequence moved or was odd. the loop never locks or
+ * waits on a writer. writers (normally just the main thread) are serialized
+ * with each other
+ *
+ * <p><> period jitter and tick time go into histograms that the loop puts on
+ * the dashboard itself once a second. while the loop is running, teleop's
+ * input latency isn't measured past shaping (the setpoints go out on this
+ * thread)
+ */
+public class DriveControlLoop {
+
+  // <> intent kinds
+  private static final int kStop = 0;
+  private static final int kChassisSpeeds = 1;
+  private static final int kModuleStates = 2;
+  private static final int kX = 3;
+  // <> someone else (characterization) is driving the modules directly
+  private static final int kReleased = 4;
+
+  // <> every intent is [kind, x, y, rot, field relative, speeds..., angles...]
+  private static final int kKind = 0;
+  private static final int kXSpeed = 1;
+  private static final int kYSpeed = 2;
+  private static final int kRot = 3;
+  private static final int kFieldRelative = 4;
+  private static final int kModuleSpeeds = 5;
+
+  private static final String[] kKeys = {
+    "ControlLoop/jitter p50 ms",
+    "ControlLoop/jitter p99 ms",
+    "ControlLoop/jitter max ms",
+    "ControlLoop/tick p50 ms",
+    "ControlLoop/tick p99 ms",
+    "ControlLoop/tick max ms",
+    "ControlLoop/overruns",
+  };
+
+  private final SwerveModule[] m_modules;
+  private final DoubleSupplier m_headingRadians;
+  private final Notifier m_notifier;
+  private final int m_moduleAngles;
+
+  // <> the posted intent, only written while m_sequence is odd
+  private final double[] m_intent;
+  private final AtomicLong m_sequence = new AtomicLong();
+  private final Object m_writeLock = new Object();
+  private final AtomicBoolean m_invalidateRequested = new AtomicBoolean();
+
+  // <> held for a whole tick, see release()
+  private final Object m_tickLock = new Object();
+
+  // <> only touched by the loop's thread
+  private final double[] m_tickIntent;
+  private final FourModuleKinematics m_kinematics = new FourModuleKinematics(
+    DriveConstants.ChasisKinematics.kModuleTranslations
+  );
+  private final double[] m_speeds;
+  private final double[] m_angles;
+  private final LoopHistogram m_jitter = new LoopHistogram(
+    ControlLoop.kHistogramBinMicros,
+    ControlLoop.kHistogramBins
+  );
+  private final LoopHistogram m_tickTime = new LoopHistogram(
+    ControlLoop.kHistogramBinMicros,
+    ControlLoop.kHistogramBins
+  );
+  private long m_periodNanos = 0;
+  private long m_lastStartNanos = 0;
+  private long m_overruns = 0;
+  private long m_ticks = 0;
+  private boolean m_prioritySet = false;
+
+  /**
+   * <> construct a control loop (it won't run until {@link #start(double)}
+   * is called). starts out stopped
+   *
+   * @param modules        modules to command, in kinematics order
+   * @param headingRadians supplies the robot's heading, called on the loop's
+   *                       thread
+   */
+  public DriveControlLoop(SwerveModule[] modules, DoubleSupplier headingRadians) {
+    m_modules = modules;
+    m_headingRadians = headingRadians;
+    m_moduleAngles = kModuleSpeeds + modules.length;
+    m_intent = new double[kModuleSpeeds + modules.length * 2];
+    m_tickIntent = new double[m_intent.length];
+    m_speeds = new double[modules.length];
+    m_angles = new double[modules.length];
+
+    m_notifier = new Notifier(this::tick);
+    m_notifier.setName("DriveControlLoop");
+  }
+
+  /**
+   * <> start ticking
+   *
+   * @param frequencyHz how many times a second to command the modules
+   */
+  public void start(double frequencyHz) {
+    m_periodNanos = (long) (1e9 / frequencyHz);
+    m_notifier.startPeriodic(1.0 / frequencyHz);
+  }
+
+  public void stop() {
+    m_notifier.stop();
+  }
+
+  /**
+   * <> drive with chassis speeds (same arguments as
+   * {@link DriveSubsystem#drive(double, double, double, boolean)})
+   */
+  public void postChassisSpeeds(
+    double xSpeed,
+    double ySpeed,
+    double rot,
+    boolean fieldRelative
+  ) {
+    synchronized (m_writeLock) {
+      long sequence = beginWrite();
+      m_intent[kKind] = kChassisSpeeds;
+      m_intent[kXSpeed] = xSpeed;
+      m_intent[kYSpeed] = ySpeed;
+      m_intent[kRot] = rot;
+      m_intent[kFieldRelative] = fieldRelative ? 1 : 0;
+      endWrite(sequence);
+    }
+  }
+
+  /**
+   * <> drive each module at a state (desaturated by the loop)
+   *
+   * @param states one per module, copied before this returns
+   */
+  public void postModuleStates(SwerveModuleState[] states) {
+    synchronized (m_writeLock) {
+      long sequence = beginWrite();
+      m_intent[kKind] = kModuleStates;
+      for (int i = 0; i < m_modules.length; i++) {
+        m_intent[kModuleSpeeds + i] = states[i].speedMetersPerSecond;
+        m_intent[m_moduleAngles + i] = states[i].angle.getRadians();
+      }
+      endWrite(sequence);
+    }
+  }
+
+  /**
+   * <> same as {@link #postModuleStates(SwerveModuleState[])} without the
+   * state objects
+   *
+   * @param speeds        one per module in meters per second, copied before
+   *                      this returns
+   * @param anglesRadians one per module, copied before this returns
+   */
+  public void postModuleStates(double[] speeds, double[] anglesRadians) {
+    synchronized (m_writeLock) {
+      long sequence = beginWrite();
+      m_intent[kKind] = kModuleStates;
+      for (int i = 0; i < m_modules.length; i++) {
+        m_intent[kModuleSpeeds + i] = speeds[i];
+        m_intent[m_moduleAngles + i] = anglesRadians[i];
+      }
+      endWrite(sequence);
+    }
+  }
+
+  /** <> stop every module */
+  public void postStop() {
+    postKind(kStop);
+  }
+
+  /** <> put the wheels in an X */
+  public void postX() {
+    postKind(kX);
+  }
+
+  /**
+   * <> stops the loop from commanding the modules until the next intent is
+   * posted, and waits for a tick in progress to finish, so the caller can
+   * drive the modules itself afterwards
+   */
+  public void release() {
+    synchronized (m_writeLock) {
+      // <> characterization calls this every capture, only post once
+      if (m_intent[kKind] != kReleased) {
+        postKind(kReleased);
+      }
+    }
+    synchronized (m_tickLock) {
+      // <> nothing to do, just waiting for the tick
+    }
+  }
+
+  /** <> resend every module's setpoints next tick */
+  public void invalidateSetpoints() {
+    m_invalidateRequested.set(true);
+  }
+
+  private void postKind(int kind) {
+    synchronized (m_writeLock) {
+      long sequence = beginWrite();
+      m_intent[kKind] = kind;
+      endWrite(sequence);
+    }
+  }
+
+  // <> odd sequence = write in progress
+  private long beginWrite() {
+    long sequence = m_sequence.get() + 1;
+    m_sequence.set(sequence);
+    // <> keep the intent writes from moving ahead of the odd sequence
+    VarHandle.storeStoreFence();
+    return sequence;
+  }
+
+  private void endWrite(long sequence) {
+    m_sequence.set(sequence + 1);
+  }
+
+  // <> copies the intent into m_tickIntent, retrying if a write got in the way
+  private void readIntent() {
+    while (true) {
+      long before = m_sequence.get();
+      if ((before & 1) != 0) {
+        Thread.onSpinWait();
+        continue;
+      }
+      System.arraycopy(m_intent, 0, m_tickIntent, 0, m_intent.length);
+      VarHandle.acquireFence();
+      if (m_sequence.get() == before) {
+        return;
+      }
+    }
+  }
+
+  // <> runs on the notifier thread
+  private void tick() {
+    long start = System.nanoTime();
+    if (!m_prioritySet) {
+      // <> real time, above the main robot thread (which isn't)
+      Threads.setCurrentThreadPriority(true, ControlLoop.kThreadPriority);
+      m_prioritySet = true;
+    }
+    if (m_lastStartNanos != 0) {
+      long late = Math.abs(start - m_lastStartNanos - m_periodNanos);
+      m_jitter.record(late);
+    }
+    m_lastStartNanos = start;
+
+    synchronized (m_tickLock) {
+      readIntent();
+      command();
+    }
+
+    long elapsed = System.nanoTime() - start;
+    m_tickTime.record(elapsed);
+    if (elapsed > m_periodNanos) {
+      m_overruns++;
+    }
+    m_ticks++;
+    if (m_ticks % ControlLoop.kPublishPeriodTicks == 0) {
+      publish();
+    }
+  }
+
+  private void command() {
+    int kind = (int) m_tickIntent[kKind];
+    if (kind == kReleased) {
+      return;
+    }
+    if (m_invalidateRequested.getAndSet(false)) {
+      for (SwerveModule module : m_modules) {
+        module.invalidateSetpoints();
+      }
+    }
+
+    double now = Timer.getFPGATimestamp();
+    for (SwerveModule module : m_modules) {
+      module.updateControlInputs(now);
+    }
+
+    switch (kind) {
+      case kChassisSpeeds:
+        boolean fieldRelative = m_tickIntent[kFieldRelative] != 0;
+        DriveSubsystem.calculateModuleSetpoints(
+          m_kinematics,
+          m_tickIntent[kXSpeed],
+          m_tickIntent[kYSpeed],
+          m_tickIntent[kRot],
+          fieldRelative,
+          fieldRelative ? m_headingRadians.getAsDouble() : 0,
+          m_speeds,
+          m_angles
+        );
+        for (int i = 0; i < m_modules.length; i++) {
+          m_modules[i].setDesiredStateFromControlLoop(
+            m_speeds[i],
+            m_angles[i],
+            false
+          );
+        }
+        break;
+      case kModuleStates:
+        for (int i = 0; i < m_modules.length; i++) {
+          m_speeds[i] = m_tickIntent[kModuleSpeeds + i];
+          m_angles[i] = m_tickIntent[m_moduleAngles + i];
+        }
+        // <> same desaturation as DriveSubsystem.setModuleStates()
+        FourModuleKinematics.desaturate(
+          m_speeds,
+          DriveConstants.kMaxMetersPerSecond
+        );
+        for (int i = 0; i < m_modules.length; i++) {
+          m_modules[i].setDesiredStateFromControlLoop(
+            m_speeds[i],
+            m_angles[i],
+            true
+          );
+        }
+        break;
+      case kX:
+        for (int i = 0; i < m_modules.length; i++) {
+          m_modules[i].setDesiredStateFromControlLoop(
+            0,
+            DriveSubsystem.xAngle(i).getRadians(),
+            true
+          );
+        }
+        break;
+      default:
+        for (SwerveModule module : m_modules) {
+          module.stopFromControlLoop();
+        }
+        break;
+    }
+  }
+
+  private void publish() {
+    SmartDashboard.putNumber(kKeys[0], m_jitter.getPercentileMillis(0.5));
+    SmartDashboard.putNumber(kKeys[1], m_jitter.getPercentileMillis(0.99));
+    SmartDashboard.putNumber(kKeys[2], m_jitter.getMaxMillis());
+    SmartDashboard.putNumber(kKeys[3], m_tickTime.getPercentileMillis(0.5));
+    SmartDashboard.putNumber(kKeys[4], m_tickTime.getPercentileMillis(0.99));
+    SmartDashboard.putNumber(kKeys[5], m_tickTime.getMaxMillis());
+    SmartDashboard.putNumber(kKeys[6], m_overruns);
+  }
+}
@@ -4,7 +4,6 @@
 
 package frc.robot.subsystems;
 
-import com.kauailabs.navx.frc.AHRS;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -12,67 +11,439 @@ import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.DriveTrain.DriveConstants;
+import frc.robot.Constants.DriveTrain.DriveConstants.ControlLoop;
+import frc.robot.Constants.Profiling;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.SetpointCache;
+import frc.robot.util.TelemetryLog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DriveSubsystem extends SubsystemBase {
 
-  // <> create swerve modules
-  private final SwerveModule m_frontLeft = new SwerveModule(
-    DriveConstants.IDs.kFrontLeftDrivingCanId,
-    DriveConstants.IDs.kFrontLeftTurningCanId,
-    DriveConstants.ModuleOffsets.kFrontLeftOffset
-  );
+  // <> swerve modules
+  private final SwerveModule m_frontLeft;
+  private final SwerveModule m_frontRight;
+  private final SwerveModule m_rearLeft;
+  private final SwerveModule m_rearRight;
+  private final SwerveModule[] m_modules;
 
-  private final SwerveModule m_frontRight = new SwerveModule(
-    DriveConstants.IDs.kFrontRightDrivingCanId,
-    DriveConstants.IDs.kFrontRightTurningCanId,
-    DriveConstants.ModuleOffsets.kFrontRightOffset
-  );
+  // <> gyro, and this loop's readings from it
+  private final GyroIO m_gyroIO;
+  private final GyroIO.GyroIOInputs m_gyroInputs = new GyroIO.GyroIOInputs();
 
-  private final SwerveModule m_rearLeft = new SwerveModule(
-    DriveConstants.IDs.kRearLeftDrivingCanId,
-    DriveConstants.IDs.kRearLeftTurningCanId,
-    DriveConstants.ModuleOffsets.kBackLeftOffset
-  );
+  // <> separate gyro readings for the odometry sampler's thread
+  private final GyroIO.GyroIOInputs m_sampledGyroInputs = new GyroIO.GyroIOInputs();
 
-  private final SwerveModule m_rearRight = new SwerveModule(
-    DriveConstants.IDs.kRearRightDrivingCanId,
-    DriveConstants.IDs.kRearRightTurningCanId,
-    DriveConstants.ModuleOffsets.kBackRightOffset
+  // <> allocation free kinematics for drive() (main thread), used instead of
+  // <> calculateModuleStates() when kSpecializedKinematics is true
+  private final FourModuleKinematics m_kinematics = new FourModuleKinematics(
+    DriveConstants.ChasisKinematics.kModuleTranslations
   );
+  private final double[] m_setpointSpeeds = new double[4];
+  private final double[] m_setpointAngles = new double[4];
 
-  // <> gyro
-  private final AHRS m_gyro = new AHRS();
+  // <> separate readings for the control loop's thread
+  private final GyroIO.GyroIOInputs m_controlGyroInputs = new GyroIO.GyroIOInputs();
 
-  // <> odometry for tracking robot pose
-  SwerveDriveOdometry m_odometry = new SwerveDriveOdometry(
-    DriveConstants.ChasisKinematics.kDriveKinematics,
-    getHeading(),
-    new SwerveModulePosition[] {
-      m_frontLeft.getPosition(),
-      m_frontRight.getPosition(),
-      m_rearLeft.getPosition(),
-      m_rearRight.getPosition(),
-    }
+  // <> gyro readings looked up by time, see getHeadingRadiansAt()
+  private final GyroIO.GyroIOInputs m_interpolatedGyroInputs = new GyroIO.GyroIOInputs();
+
+  // <> FPGA time this loop's readings were taken at, see updateInputs()
+  private double m_inputsTimestamp = 0;
+
+  // <> readings for the characterization capture thread, see sampleCharacterization()
+  private final ModuleIO.ModuleIOInputs[] m_characterizationInputs = {
+    new ModuleIO.ModuleIOInputs(),
+    new ModuleIO.ModuleIOInputs(),
+    new ModuleIO.ModuleIOInputs(),
+    new ModuleIO.ModuleIOInputs(),
+  };
+
+  // <> reused every loop so updating odometry doesn't allocate
+  private final double[] m_moduleDistances;
+  private final double[] m_moduleAngles;
+
+  // <> odometry for tracking robot pose (built once the modules are configured)
+  SwerveDriveOdometry m_odometry;
+
+  // <> how many spark maxes had to be reflashed at boot, and how long
+  // <> configuring the modules took
+  private int m_reflashedControllers = 0;
+  private double m_configureMillis = 0;
+
+  // <> status frame profiles last applied (null means rev's defaults)
+  private StatusFrameProfile m_drivingStatusFrames = null;
+  private StatusFrameProfile m_turningStatusFrames = null;
+
+  // <> garbage free odometry, used instead of the above when
+  // <> kZeroAllocationOdometry is true
+  private final AllocationFreeOdometry m_fastOdometry;
+
+  // <> reads sensors faster than the main loop when kHighFrequencyOdometry
+  // <> is true (null otherwise)
+  private final OdometrySampler m_odometrySampler;
+
+  // <> commands the modules on its own thread when ControlLoop.kEnabled is
+  // <> true (null otherwise), everything that drives just posts to it
+  private final DriveControlLoop m_controlLoop;
+
+  // <> where the robot has been, for anything that needs latency compensation
+  private final PoseHistory m_poseHistory = new PoseHistory(
+    (int) Math.ceil(
+      DriveConstants.kPoseHistorySeconds *
+      Math.max(DriveConstants.kOdometryFrequencyHz, 50)
+    )
   );
 
-  /** Creates a new DriveSubsystem. */
+  // <> profiler section for periodic()
+  private final int m_profilerSection = LoopProfiler
+    .getInstance()
+    .register("DriveSubsystem");
+
+  // <> telemetry channel handles
+  private final int m_poseXChannel;
+  private final int m_poseYChannel;
+  private final int m_poseThetaChannel;
+  private final int m_headingChannel;
+  private final int[] m_moduleSpeedChannels;
+  private final int[] m_moduleAngleChannels;
+  private final int[][] m_moduleInputChannels;
+  private final int m_gyroConnectedChannel;
+  private final int m_gyroAngleChannel;
+  private final int m_gyroRateChannel;
+  private final int m_setpointsSentChannel;
+  private final int m_setpointsSuppressedChannel;
+
+  // <> reused every loop so logging the pose doesn't build a Pose2d
+  private final double[] m_loggedPose = new double[3];
+
+  /**
+   * Creates a new DriveSubsystem. <> uses the real hardware on the robot and
+   * physics models in simulation
+   */
   public DriveSubsystem() {
+    this(
+      moduleIO(
+        DriveConstants.IDs.kFrontLeftDrivingCanId,
+        DriveConstants.IDs.kFrontLeftTurningCanId
+      ),
+      moduleIO(
+        DriveConstants.IDs.kFrontRightDrivingCanId,
+        DriveConstants.IDs.kFrontRightTurningCanId
+      ),
+      moduleIO(
+        DriveConstants.IDs.kRearLeftDrivingCanId,
+        DriveConstants.IDs.kRearLeftTurningCanId
+      ),
+      moduleIO(
+        DriveConstants.IDs.kRearRightDrivingCanId,
+        DriveConstants.IDs.kRearRightTurningCanId
+      ),
+      RobotBase.isSimulation() ? new GyroIOSim() : new GyroIONavX()
+    );
+  }
+
+  /**
+   * <> creates a drive subsystem on top of any hardware (real, simulated, or
+   * replayed), so the drivetrain logic can run without a robot
+   *
+   * @param frontLeft  front left module
+   * @param frontRight front right module
+   * @param rearLeft   rear left module
+   * @param rearRight  rear right module
+   * @param gyro       the gyro
+   */
+  public DriveSubsystem(
+    ModuleIO frontLeft,
+    ModuleIO frontRight,
+    ModuleIO rearLeft,
+    ModuleIO rearRight,
+    GyroIO gyro
+  ) {
+    m_frontLeft =
+      new SwerveModule(
+        frontLeft,
+        DriveConstants.ModuleOffsets.kFrontLeftOffset
+      );
+    m_frontRight =
+      new SwerveModule(
+        frontRight,
+        DriveConstants.ModuleOffsets.kFrontRightOffset
+      );
+    m_rearLeft =
+      new SwerveModule(
+        rearLeft,
+        DriveConstants.ModuleOffsets.kBackLeftOffset
+      );
+    m_rearRight =
+      new SwerveModule(
+        rearRight,
+        DriveConstants.ModuleOffsets.kBackRightOffset
+      );
+    m_modules =
+      new SwerveModule[] { m_frontLeft, m_frontRight, m_rearLeft, m_rearRight };
+    m_gyroIO = gyro;
+
+    m_moduleDistances = new double[m_modules.length];
+    m_moduleAngles = new double[m_modules.length];
+    m_moduleSpeedChannels = new int[m_modules.length];
+    m_moduleAngleChannels = new int[m_modules.length];
+    m_moduleInputChannels = new int[m_modules.length][];
+
+    configureModules();
+    updateInputs();
+
+    m_odometry =
+      new SwerveDriveOdometry(
+        DriveConstants.ChasisKinematics.kDriveKinematics,
+        getHeading(),
+        new SwerveModulePosition[] {
+          m_frontLeft.getPosition(),
+          m_frontRight.getPosition(),
+          m_rearLeft.getPosition(),
+          m_rearRight.getPosition(),
+        }
+      );
+
     resetEncoders();
+
+    TelemetryLog log = TelemetryLog.getInstance();
+    m_poseXChannel = log.registerChannel("drive/pose x");
+    m_poseYChannel = log.registerChannel("drive/pose y");
+    m_poseThetaChannel = log.registerChannel("drive/pose theta");
+    m_headingChannel = log.registerChannel("drive/gyro heading");
+    for (int i = 0; i < m_modules.length; i++) {
+      m_moduleSpeedChannels[i] =
+        log.registerChannel("drive/module " + i + " speed");
+      m_moduleAngleChannels[i] =
+        log.registerChannel("drive/module " + i + " angle");
+    }
+    // <> every raw reading, so a log can be replayed (see LogReplay)
+    for (int i = 0; i < m_modules.length; i++) {
+      m_moduleInputChannels[i] =
+        new int[] {
+          log.registerChannel(LogReplay.modulePositionChannel(i)),
+          log.registerChannel(LogReplay.moduleVelocityChannel(i)),
+          log.registerChannel(LogReplay.moduleTurningChannel(i)),
+        };
+    }
+    m_gyroConnectedChannel = log.registerChannel(LogReplay.kGyroConnectedChannel);
+    m_gyroAngleChannel = log.registerChannel(LogReplay.kGyroAngleChannel);
+    m_gyroRateChannel = log.registerChannel(LogReplay.kGyroRateChannel);
+    m_setpointsSentChannel = log.registerChannel("can/setpoints sent");
+    m_setpointsSuppressedChannel =
+      log.registerChannel("can/setpoints suppressed");
+
+    readModulePositions();
+    m_fastOdometry =
+      new AllocationFreeOdometry(
+        DriveConstants.ChasisKinematics.kModuleTranslations,
+        getHeadingRadians(),
+        m_moduleDistances,
+        new Pose2d()
+      );
+
+    if (DriveConstants.kHighFrequencyOdometry) {
+      m_odometrySampler =
+        new OdometrySampler(
+          m_modules,
+          this::sampleHeadingRadians,
+          DriveConstants.kOdometryQueueCapacity
+        );
+      m_odometrySampler.start(DriveConstants.kOdometryFrequencyHz);
+    } else {
+      m_odometrySampler = null;
+    }
+
+    if (ControlLoop.kEnabled) {
+      m_controlLoop = new DriveControlLoop(m_modules, this::controlHeadingRadians);
+      m_controlLoop.start(ControlLoop.kFrequencyHz);
+    } else {
+      m_controlLoop = null;
+    }
+  }
+
+  /**
+   * <> configures all four modules at the same time instead of one after
+   * another, each module only talks to its own two spark maxes
+   */
+  private void configureModules() {
+    long start = System.nanoTime();
+
+    ExecutorService executor = Executors.newFixedThreadPool(m_modules.length);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (SwerveModule module : m_modules) {
+        results.add(executor.submit(module::configure));
+      }
+      for (Future<Integer> result : results) {
+        m_reflashedControllers += result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted configuring swerve modules", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("couldn't configure swerve modules", e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    m_configureMillis = (System.nanoTime() - start) / 1e6;
+  }
+
+  private static ModuleIO moduleIO(int drivingCANId, int turningCANId) {
+    return RobotBase.isSimulation()
+      ? new ModuleIOSim()
+      : new ModuleIOSparkMax(drivingCANId, turningCANId);
+  }
+
+  /** @return how many spark maxes had to be reflashed at boot */
+  public int getReflashedControllers() {
+    return m_reflashedControllers;
+  }
+
+  /** @return how long configuring the modules took at boot */
+  public double getConfigureMillis() {
+    return m_configureMillis;
   }
 
   @Override
   public void periodic() {
-    // <> update odometry
-    m_odometry.update(
-      getHeading(),
-      new SwerveModulePosition[] {
-        m_frontLeft.getPosition(),
-        m_frontRight.getPosition(),
-        m_rearLeft.getPosition(),
-        m_rearRight.getPosition(),
-      }
+    LoopProfiler.getInstance().start(m_profilerSection);
+    // <> the only place the hardware is read this loop, everything after
+    // <> (including commands) uses these readings
+    updateInputs();
+    updateOdometry();
+    logTelemetry();
+    LoopProfiler.getInstance().stop(m_profilerSection);
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    for (SwerveModule module : m_modules) {
+      module.simulationPeriodic(Profiling.kLoopPeriodSeconds);
+    }
+
+    // <> the gyro follows whatever the wheels say the robot did
+    ChassisSpeeds speeds = DriveConstants.ChasisKinematics.kDriveKinematics.toChassisSpeeds(
+      m_frontLeft.getState(),
+      m_frontRight.getState(),
+      m_rearLeft.getState(),
+      m_rearRight.getState()
+    );
+    m_gyroIO.simulationPeriodic(
+      speeds.omegaRadiansPerSecond,
+      Profiling.kLoopPeriodSeconds
+    );
+  }
+
+  /**
+   * <> reads every module and the gyro into this loop's inputs, all stamped
+   * with the same time
+   */
+  private void updateInputs() {
+    m_inputsTimestamp = Timer.getFPGATimestamp();
+    for (SwerveModule module : m_modules) {
+      module.updateInputs(m_inputsTimestamp);
+    }
+    m_gyroIO.updateInputs(m_gyroInputs);
+  }
+
+  /** @return FPGA time this loop's sensor readings were taken at */
+  public double getInputsTimestamp() {
+    return m_inputsTimestamp;
+  }
+
+  /** <> writes this loop's pose, heading and module states to telemetry */
+  private void logTelemetry() {
+    TelemetryLog log = TelemetryLog.getInstance();
+    getPose(m_loggedPose);
+    log.set(m_poseXChannel, m_loggedPose[0]);
+    log.set(m_poseYChannel, m_loggedPose[1]);
+    log.set(m_poseThetaChannel, m_loggedPose[2]);
+    log.set(m_headingChannel, getHeadingRadians());
+    for (int i = 0; i < m_modules.length; i++) {
+      log.set(m_moduleSpeedChannels[i], m_modules[i].getDriveVelocity());
+      log.set(m_moduleAngleChannels[i], m_modules[i].getAngleRadians());
+    }
+    for (int i = 0; i < m_modules.length; i++) {
+      ModuleIO.ModuleIOInputs inputs = m_modules[i].getInputs();
+      log.set(m_moduleInputChannels[i][0], inputs.drivePositionMeters);
+      log.set(m_moduleInputChannels[i][1], inputs.driveVelocityMetersPerSecond);
+      log.set(m_moduleInputChannels[i][2], inputs.turningPositionRadians);
+    }
+    log.set(m_gyroConnectedChannel, m_gyroInputs.connected);
+    log.set(m_gyroAngleChannel, m_gyroInputs.angleDegrees);
+    log.set(m_gyroRateChannel, m_gyroInputs.rateDegreesPerSecond);
+    log.set(m_setpointsSentChannel, SetpointCache.getTotalSent());
+    log.set(m_setpointsSuppressedChannel, SetpointCache.getTotalSuppressed());
+  }
+
+  /** <> updates odometry from the latest (or queued) sensor readings */
+  private void updateOdometry() {
+    if (m_odometrySampler == null) {
+      readModulePositions();
+      updateOdometry(m_inputsTimestamp, getHeadingRadians());
+      return;
+    }
+
+    // <> catch up on everything sampled since the last loop. the gyro's
+    // <> history (if it has one) gives the heading at exactly the time the
+    // <> encoders were read, the newest samples fall back to the latest reading
+    while (m_odometrySampler.poll(m_moduleDistances, m_moduleAngles)) {
+      double timestamp = m_odometrySampler.getLastTimestamp();
+      updateOdometry(
+        timestamp,
+        m_gyroIO.sampleAt(timestamp, m_interpolatedGyroInputs)
+          ? headingRadians(m_interpolatedGyroInputs.angleDegrees)
+          : m_odometrySampler.getLastHeadingRadians()
+      );
+    }
+  }
+
+  /**
+   * <> feeds the module readings currently in m_moduleDistances and
+   * m_moduleAngles into odometry, then records the new pose
+   *
+   * @param timestamp      FPGA time the modules were read at
+   * @param headingRadians heading at the time the modules were read
+   */
+  private void updateOdometry(double timestamp, double headingRadians) {
+    if (DriveConstants.kZeroAllocationOdometry) {
+      m_fastOdometry.update(headingRadians, m_moduleDistances, m_moduleAngles);
+      m_poseHistory.add(
+        timestamp,
+        m_fastOdometry.getX(),
+        m_fastOdometry.getY(),
+        m_fastOdometry.getThetaRadians()
+      );
+      return;
+    }
+
+    SwerveModulePosition[] positions = new SwerveModulePosition[m_modules.length];
+    for (int i = 0; i < m_modules.length; i++) {
+      positions[i] =
+        new SwerveModulePosition(
+          m_moduleDistances[i],
+          new Rotation2d(m_moduleAngles[i])
+        );
+    }
+    Pose2d pose = m_odometry.update(new Rotation2d(headingRadians), positions);
+    m_poseHistory.add(
+      timestamp,
+      pose.getX(),
+      pose.getY(),
+      pose.getRotation().getRadians()
     );
   }
 
@@ -82,17 +453,76 @@ public class DriveSubsystem extends SubsystemBase {
    * @return the pose
    */
   public Pose2d getPose() {
+    if (DriveConstants.kZeroAllocationOdometry) {
+      return m_fastOdometry.getPoseMeters();
+    }
     return m_odometry.getPoseMeters();
   }
 
+  /**
+   * <> same as {@link #getPose()} without building any objects (when the
+   * allocation free odometry is on)
+   *
+   * @param pose filled with [x, y, theta]
+   */
+  public void getPose(double[] pose) {
+    if (DriveConstants.kZeroAllocationOdometry) {
+      pose[0] = m_fastOdometry.getX();
+      pose[1] = m_fastOdometry.getY();
+      pose[2] = m_fastOdometry.getThetaRadians();
+      return;
+    }
+    Pose2d current = m_odometry.getPoseMeters();
+    pose[0] = current.getX();
+    pose[1] = current.getY();
+    pose[2] = current.getRotation().getRadians();
+  }
+
+  /**
+   * <> where the robot was at some point in the recent past
+   *
+   * @param timestamp FPGA time in seconds
+   * @return the interpolated pose (or the current pose if there's no history)
+   */
+  public Pose2d getPoseAt(double timestamp) {
+    Pose2d pose = m_poseHistory.getPose(timestamp);
+    return pose != null ? pose : getPose();
+  }
+
+  /**
+   * <> same as {@link #getPoseAt(double)} without building any objects
+   *
+   * @param timestamp FPGA time in seconds
+   * @param pose      filled with [x, y, theta]
+   * @return false if there's no history yet
+   */
+  public boolean samplePoseAt(double timestamp, double[] pose) {
+    return m_poseHistory.sample(timestamp, pose);
+  }
+
+  /** <> copies every module's distance and angle into the reused arrays */
+  private void readModulePositions() {
+    for (int i = 0; i < m_modules.length; i++) {
+      m_moduleDistances[i] = m_modules[i].getDrivePositionMeters();
+      m_moduleAngles[i] = m_modules[i].getAngleRadians();
+    }
+  }
+
   /**
    * <> resets the odometry to the specified pose
    *
    * @param pose pose to set the odometry to
    */
   public void resetOdometry(Pose2d pose) {
+    // <> samples taken before the reset don't apply to the new pose
+    if (m_odometrySampler != null) {
+      m_odometrySampler.clear();
+    }
+
+    // <> same heading (offset and reversal applied) that odometry is updated
+    // <> with, so the reset doesn't rotate the field
     m_odometry.resetPosition(
-      Rotation2d.fromDegrees(m_gyro.getAngle()),
+      getHeading(),
       new SwerveModulePosition[] {
         m_frontLeft.getPosition(),
         m_frontRight.getPosition(),
@@ -101,6 +531,12 @@ public class DriveSubsystem extends SubsystemBase {
       },
       pose
     );
+
+    readModulePositions();
+    m_fastOdometry.resetPosition(getHeadingRadians(), m_moduleDistances, pose);
+
+    // <> the old history is in a different frame now
+    m_poseHistory.clear();
   }
 
   /**
@@ -117,6 +553,62 @@ public class DriveSubsystem extends SubsystemBase {
     double ySpeed,
     double rot,
     boolean fieldRelative
+  ) {
+    if (m_controlLoop != null) {
+      m_controlLoop.postChassisSpeeds(xSpeed, ySpeed, rot, fieldRelative);
+      return;
+    }
+
+    if (DriveConstants.kSpecializedKinematics) {
+      calculateModuleSetpoints(
+        m_kinematics,
+        xSpeed,
+        ySpeed,
+        rot,
+        fieldRelative,
+        getHeadingRadians(),
+        m_setpointSpeeds,
+        m_setpointAngles
+      );
+      for (int i = 0; i < m_modules.length; i++) {
+        m_modules[i].setDesiredState(m_setpointSpeeds[i], m_setpointAngles[i], false);
+      }
+      return;
+    }
+
+    SwerveModuleState[] swerveModuleStates = calculateModuleStates(
+      xSpeed,
+      ySpeed,
+      rot,
+      fieldRelative,
+      fieldRelative ? getHeading() : null
+    );
+
+    // <> set desired wheel speeds
+    m_frontLeft.setDesiredState(swerveModuleStates[0], false);
+    m_frontRight.setDesiredState(swerveModuleStates[1], false);
+    m_rearLeft.setDesiredState(swerveModuleStates[2], false);
+    m_rearRight.setDesiredState(swerveModuleStates[3], false);
+  }
+
+  /**
+   * <> the math half of {@link #drive(double, double, double, boolean)}, kept
+   * separate from the hardware so it can be benchmarked
+   *
+   * @param xSpeed        Speed of the robot in the x direction (forward).
+   * @param ySpeed        Speed of the robot in the y direction (sideways).
+   * @param rot           Angular rate of the robot.
+   * @param fieldRelative Whether the provided x and y speeds are relative to the
+   *                      field.
+   * @param heading       the robot's heading (only used if field relative)
+   * @return desaturated module states
+   */
+  static SwerveModuleState[] calculateModuleStates(
+    double xSpeed,
+    double ySpeed,
+    double rot,
+    boolean fieldRelative,
+    Rotation2d heading
   ) {
     // <> apply speeds defined in constants
     xSpeed *= DriveConstants.kDrivingSpeedDamper;
@@ -126,12 +618,7 @@ public class DriveSubsystem extends SubsystemBase {
     // <> adjust the inputs if field relative is true
     SwerveModuleState[] swerveModuleStates = DriveConstants.ChasisKinematics.kDriveKinematics.toSwerveModuleStates(
       fieldRelative
-        ? ChassisSpeeds.fromFieldRelativeSpeeds(
-          xSpeed,
-          ySpeed,
-          rot,
-          getHeading()
-        )
+        ? ChassisSpeeds.fromFieldRelativeSpeeds(xSpeed, ySpeed, rot, heading)
         : new ChassisSpeeds(xSpeed, ySpeed, rot)
     );
 
@@ -141,33 +628,77 @@ public class DriveSubsystem extends SubsystemBase {
       DriveConstants.kMaxMetersPerSecond
     );
 
-    // <> set desired wheel speeds
-    m_frontLeft.setDesiredState(swerveModuleStates[0], false);
-    m_frontRight.setDesiredState(swerveModuleStates[1], false);
-    m_rearLeft.setDesiredState(swerveModuleStates[2], false);
-    m_rearRight.setDesiredState(swerveModuleStates[3], false);
+    return swerveModuleStates;
+  }
+
+  /**
+   * <> same as {@link #calculateModuleStates(double, double, double, boolean,
+   * Rotation2d)} with {@link FourModuleKinematics}, so nothing is allocated
+   *
+   * @param kinematics     kinematics for the calling thread
+   * @param xSpeed         Speed of the robot in the x direction (forward).
+   * @param ySpeed         Speed of the robot in the y direction (sideways).
+   * @param rot            Angular rate of the robot.
+   * @param fieldRelative  Whether the provided x and y speeds are relative to
+   *                       the field.
+   * @param headingRadians the robot's heading (only used if field relative)
+   * @param speeds         filled with desaturated module speeds
+   * @param angles         filled with module angles in radians
+   */
+  static void calculateModuleSetpoints(
+    FourModuleKinematics kinematics,
+    double xSpeed,
+    double ySpeed,
+    double rot,
+    boolean fieldRelative,
+    double headingRadians,
+    double[] speeds,
+    double[] angles
+  ) {
+    // <> apply speeds defined in constants
+    xSpeed *= DriveConstants.kDrivingSpeedDamper;
+    ySpeed *= DriveConstants.kDrivingSpeedDamper;
+    rot *= DriveConstants.kAngularSpeedDamper;
+
+    if (fieldRelative) {
+      kinematics.toModuleStatesFieldRelative(
+        xSpeed,
+        ySpeed,
+        rot,
+        headingRadians,
+        speeds,
+        angles
+      );
+    } else {
+      kinematics.toModuleStates(xSpeed, ySpeed, rot, speeds, angles);
+    }
+
+    FourModuleKinematics.desaturate(speeds, DriveConstants.kMaxMetersPerSecond);
   }
 
   /**
    * <> set wheels into an x position to prevent movement
    */
   public void setX() {
-    m_frontLeft.setDesiredState(
-      new SwerveModuleState(0, Rotation2d.fromDegrees(45)),
-      true
-    );
-    m_frontRight.setDesiredState(
-      new SwerveModuleState(0, Rotation2d.fromDegrees(-45)),
-      true
-    );
-    m_rearLeft.setDesiredState(
-      new SwerveModuleState(0, Rotation2d.fromDegrees(-45)),
-      true
-    );
-    m_rearRight.setDesiredState(
-      new SwerveModuleState(0, Rotation2d.fromDegrees(45)),
-      true
-    );
+    if (m_controlLoop != null) {
+      m_controlLoop.postX();
+      return;
+    }
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].setDesiredState(0, xAngle(i).getRadians(), true);
+    }
+  }
+
+  // <> module angles for setX(), in kinematics order
+  private static final Rotation2d[] kXAngles = {
+    Rotation2d.fromDegrees(45),
+    Rotation2d.fromDegrees(-45),
+    Rotation2d.fromDegrees(-45),
+    Rotation2d.fromDegrees(45),
+  };
+
+  static Rotation2d xAngle(int module) {
+    return kXAngles[module];
   }
 
   /**
@@ -178,10 +709,15 @@ public class DriveSubsystem extends SubsystemBase {
   public void setModuleStates(
     SwerveModuleState[] desiredStates
   ) {
+    if (m_controlLoop != null) {
+      m_controlLoop.postModuleStates(desiredStates);
+      return;
+    }
+
     // <> desaturate wheel speeds
     SwerveDriveKinematics.desaturateWheelSpeeds(
       desiredStates,
-      DriveConstants.kDrivingSpeedDamper
+      DriveConstants.kMaxMetersPerSecond
     );
 
     // <> set the desired states
@@ -191,6 +727,37 @@ public class DriveSubsystem extends SubsystemBase {
     m_rearRight.setDesiredState(desiredStates[3], true);
   }
 
+  /**
+   * <> drive at robot relative chassis speeds without allocating (no speed
+   * dampers, these are already meters and radians per second). used by the
+   * trajectory follower every loop
+   *
+   * @param xSpeed forward speed in meters per second
+   * @param ySpeed left speed in meters per second
+   * @param rot    counterclockwise rate in radians per second
+   */
+  public void setChassisSpeeds(double xSpeed, double ySpeed, double rot) {
+    m_kinematics.toModuleStates(
+      xSpeed,
+      ySpeed,
+      rot,
+      m_setpointSpeeds,
+      m_setpointAngles
+    );
+    FourModuleKinematics.desaturate(
+      m_setpointSpeeds,
+      DriveConstants.kMaxMetersPerSecond
+    );
+
+    if (m_controlLoop != null) {
+      m_controlLoop.postModuleStates(m_setpointSpeeds, m_setpointAngles);
+      return;
+    }
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].setDesiredState(m_setpointSpeeds[i], m_setpointAngles[i], true);
+    }
+  }
+
   /** <> reset the drive encoders */
   public void resetEncoders() {
     m_frontLeft.resetEncoders();
@@ -201,7 +768,8 @@ public class DriveSubsystem extends SubsystemBase {
 
   /** <> zero robot heading gyro */
   public void zeroHeading() {
-    m_gyro.reset();
+    m_gyroIO.reset();
+    m_gyroInputs.angleDegrees = 0;
   }
 
   /**
@@ -210,14 +778,136 @@ public class DriveSubsystem extends SubsystemBase {
    * @return the robot's heading
    */
   public Rotation2d getHeading() {
-    Rotation2d raw_reading = Rotation2d
-      .fromDegrees(m_gyro.getAngle())
-      .plus(DriveConstants.kGyroOffset);
+    return new Rotation2d(getHeadingRadians());
+  }
+
+  /**
+   * <> same as {@link #getHeading()} without building any objects
+   *
+   * @return the robot's heading in radians
+   */
+  public double getHeadingRadians() {
+    return headingRadians(m_gyroInputs.angleDegrees);
+  }
+
+  /**
+   * <> the heading at some point in the recent past (e.g. when a camera frame
+   * was taken), main thread only
+   *
+   * @param timestamp FPGA time in seconds
+   * @return heading in radians, or the current heading if the gyro has no
+   *         reading for that time
+   */
+  public double getHeadingRadiansAt(double timestamp) {
+    if (m_gyroIO.sampleAt(timestamp, m_interpolatedGyroInputs)) {
+      return headingRadians(m_interpolatedGyroInputs.angleDegrees);
+    }
+    return getHeadingRadians();
+  }
+
+  /** @return FPGA time the gyro measured this loop's reading at */
+  public double getGyroTimestamp() {
+    return m_gyroInputs.timestampSeconds;
+  }
+
+  // <> reads the gyro straight from the hardware, for the control loop
+  private double controlHeadingRadians() {
+    m_gyroIO.updateInputs(m_controlGyroInputs);
+    return headingRadians(m_controlGyroInputs.angleDegrees);
+  }
+
+  // <> reads the gyro straight from the hardware, for the odometry sampler
+  private double sampleHeadingRadians() {
+    m_gyroIO.updateInputs(m_sampledGyroInputs);
+    return headingRadians(m_sampledGyroInputs.angleDegrees);
+  }
+
+  private static double headingRadians(double angleDegrees) {
+    double raw_reading =
+      Math.toRadians(angleDegrees) + DriveConstants.kGyroOffset.getRadians();
+
+    return DriveConstants.kGyroReversed ? -raw_reading : raw_reading;
+  }
+
+  /**
+   * <> changes the status frame periods on every module
+   *
+   * @param driving profile for the driving spark maxes
+   * @param turning profile for the turning spark maxes
+   */
+  public void applyStatusFrames(
+    StatusFrameProfile driving,
+    StatusFrameProfile turning
+  ) {
+    for (SwerveModule module : m_modules) {
+      module.applyStatusFrames(driving, turning);
+    }
+    m_drivingStatusFrames = driving;
+    m_turningStatusFrames = turning;
+  }
 
-    return DriveConstants.kGyroReversed ? raw_reading.times(-1) : raw_reading;
+  /** @return the last driving profile applied, null if none has been */
+  public StatusFrameProfile getDrivingStatusFrames() {
+    return m_drivingStatusFrames;
+  }
+
+  /** @return the last turning profile applied, null if none has been */
+  public StatusFrameProfile getTurningStatusFrames() {
+    return m_turningStatusFrames;
+  }
+
+  /** <> resend every module's setpoints next loop (e.g. after a mode change) */
+  public void invalidateSetpoints() {
+    if (m_controlLoop != null) {
+      m_controlLoop.invalidateSetpoints();
+      return;
+    }
+    for (SwerveModule module : m_modules) {
+      module.invalidateSetpoints();
+    }
+  }
+
+  /**
+   * <> open loop driving on every module with the wheels held straight, for
+   * characterization. call from one thread at a time
+   *
+   * @param volts voltage to apply to every driving motor
+   */
+  public void setDriveVoltage(double volts) {
+    // <> takes the modules away from the control loop until the next
+    // <> drive, stop, etc.
+    if (m_controlLoop != null) {
+      m_controlLoop.release();
+    }
+    for (SwerveModule module : m_modules) {
+      module.setDriveVoltage(volts);
+    }
+  }
+
+  /**
+   * <> reads every module's driving motor straight from the hardware, for
+   * the characterization capture thread (doesn't touch this loop's readings)
+   *
+   * @param buffer filled with applied volts, position (meters) and velocity
+   *               (meters per second) for each module in turn
+   * @param offset where in buffer the first module's volts go
+   */
+  public void sampleCharacterization(double[] buffer, int offset) {
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].sampleCharacterization(m_characterizationInputs[i]);
+      buffer[offset + 3 * i] = m_characterizationInputs[i].driveAppliedVolts;
+      buffer[offset + 3 * i + 1] =
+        m_characterizationInputs[i].drivePositionMeters;
+      buffer[offset + 3 * i + 2] =
+        m_characterizationInputs[i].driveVelocityMetersPerSecond;
+    }
   }
 
   public void stopModules() {
+    if (m_controlLoop != null) {
+      m_controlLoop.postStop();
+      return;
+    }
     m_frontLeft.stop();
     m_frontRight.stop();
     m_rearLeft.stop();
@@ -230,6 +920,9 @@ public class DriveSubsystem extends SubsystemBase {
    * @return robot's turn rate in degrees per second
    */
   public double getTurnRate() {
-    return m_gyro.getRate() * (DriveConstants.kGyroReversed ? -1.0 : 1.0);
+    return (
+      m_gyroInputs.rateDegreesPerSecond *
+      (DriveConstants.kGyroReversed ? -1.0 : 1.0)
+    );
   }
 }
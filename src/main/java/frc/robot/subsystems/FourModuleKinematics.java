@@ -0,0 +1,146 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * <> swerve inverse kinematics for exactly four modules that only works with
+ * primitives, so driving every loop doesn't create any garbage. does the
+ * same math as wpilib's ChassisSpeeds.fromFieldRelativeSpeeds,
+ * SwerveDriveKinematics.toSwerveModuleStates and desaturateWheelSpeeds
+ * (one sin/cos of the heading, then each module's row of the inverse
+ * kinematics matrix written out by hand), and gets bit for bit the same
+ * answers (FourModuleKinematicsTest checks)
+ *
+ * <p><> like wpilib's, an instance remembers each module's last angle and
+ * keeps it when the robot is told to stop, so one instance per thread
+ */
+public class FourModuleKinematics {
+
+  private static final int kModules = 4;
+
+  // <> entries of the inverse kinematics matrix: module i's rows are
+  // <> [1, 0, -y] and [0, 1, x]
+  private final double[] m_negativeY = new double[kModules];
+  private final double[] m_x = new double[kModules];
+
+  // <> angle each module had the last time it was moving
+  private final double[] m_previousAngles = new double[kModules];
+
+  /**
+   * <> construct kinematics for four modules
+   *
+   * @param moduleTranslations module locations relative to the robot center,
+   *                           in the same order as the speeds and angles
+   */
+  public FourModuleKinematics(Translation2d[] moduleTranslations) {
+    if (moduleTranslations.length != kModules) {
+      throw new IllegalArgumentException(
+        "FourModuleKinematics needs 4 modules, got " + moduleTranslations.length
+      );
+    }
+    for (int i = 0; i < kModules; i++) {
+      // <> "+ 0.0" and "- 0.0" are the center of rotation, same as wpilib
+      // <> (it changes the sign of a zero)
+      m_negativeY[i] = -moduleTranslations[i].getY() + 0.0;
+      m_x[i] = moduleTranslations[i].getX() - 0.0;
+    }
+  }
+
+  /**
+   * <> robot relative chassis speeds to module speeds and angles
+   *
+   * @param vx            forward speed in meters per second
+   * @param vy            left speed in meters per second
+   * @param omega         counterclockwise rate in radians per second
+   * @param speeds        filled with each module's speed in meters per second
+   * @param anglesRadians filled with each module's angle
+   */
+  public void toModuleStates(
+    double vx,
+    double vy,
+    double omega,
+    double[] speeds,
+    double[] anglesRadians
+  ) {
+    // <> not moving, so keep the wheels where they were
+    if (vx == 0.0 && vy == 0.0 && omega == 0.0) {
+      for (int i = 0; i < kModules; i++) {
+        speeds[i] = 0.0;
+        anglesRadians[i] = m_previousAngles[i];
+      }
+      return;
+    }
+
+    for (int i = 0; i < kModules; i++) {
+      // <> term for term the same as the matrix multiply (the zero terms
+      // <> included), so the results match exactly
+      double x = vx * 1.0 + 0.0 * vy + m_negativeY[i] * omega;
+      double y = 0.0 * vx + vy * 1.0 + m_x[i] * omega;
+
+      // <> the same as new Rotation2d(x, y).getRadians()
+      double speed = Math.hypot(x, y);
+      double angle = speed > 1e-6 ? Math.atan2(y / speed, x / speed) : 0.0;
+
+      speeds[i] = speed;
+      anglesRadians[i] = angle;
+      m_previousAngles[i] = angle;
+    }
+  }
+
+  /**
+   * <> same as {@link #toModuleStates(double, double, double, double[],
+   * double[])} with field relative speeds
+   *
+   * @param vx             speed away from the driver station in meters per
+   *                       second
+   * @param vy             speed to the left in meters per second
+   * @param omega          counterclockwise rate in radians per second
+   * @param headingRadians the robot's heading
+   * @param speeds         filled with each module's speed in meters per
+   *                       second
+   * @param anglesRadians  filled with each module's angle
+   */
+  public void toModuleStatesFieldRelative(
+    double vx,
+    double vy,
+    double omega,
+    double headingRadians,
+    double[] speeds,
+    double[] anglesRadians
+  ) {
+    double cos = Math.cos(headingRadians);
+    double sin = Math.sin(headingRadians);
+    toModuleStates(
+      vx * cos + vy * sin,
+      -vx * sin + vy * cos,
+      omega,
+      speeds,
+      anglesRadians
+    );
+  }
+
+  /**
+   * <> scales every speed down by the same amount so none are over the max
+   * (the same as SwerveDriveKinematics.desaturateWheelSpeeds)
+   *
+   * @param speeds                   module speeds, changed in place
+   * @param maxSpeedMetersPerSecond  the fastest a module can go
+   */
+  public static void desaturate(double[] speeds, double maxSpeedMetersPerSecond) {
+    double realMax = speeds[0];
+    for (int i = 1; i < speeds.length; i++) {
+      if (speeds[i] > realMax) {
+        realMax = speeds[i];
+      }
+    }
+    if (realMax > maxSpeedMetersPerSecond) {
+      for (int i = 0; i < speeds.length; i++) {
+        speeds[i] = speeds[i] / realMax * maxSpeedMetersPerSecond;
+      }
+    }
+  }
+}
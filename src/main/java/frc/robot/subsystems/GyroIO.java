@@ -0,0 +1,61 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * <> everything the {@link DriveSubsystem} needs from the gyro, see
+ * {@link ModuleIO}
+ */
+public interface GyroIO {
+  /** <> every gyro reading, filled in once a loop */
+  class GyroIOInputs {
+
+    public boolean connected = false;
+
+    // <> navx conventions: clockwise positive, not reversed or offset
+    public double angleDegrees = 0;
+    public double rateDegreesPerSecond = 0;
+    public double pitchDegrees = 0;
+    public double rollDegrees = 0;
+
+    // <> FPGA time the gyro measured these at (older than when they were
+    // <> read, by however long the reading took to get to the rio)
+    public double timestampSeconds = 0;
+  }
+
+  /**
+   * <> reads the gyro into inputs
+   *
+   * @param inputs filled with the latest readings
+   */
+  void updateInputs(GyroIOInputs inputs);
+
+  /** <> makes the current heading read 0 */
+  void reset();
+
+  /**
+   * <> the readings at some point in the recent past, for gyros that keep a
+   * history
+   *
+   * @param timestampSeconds FPGA time
+   * @param inputs           filled in if this returns true
+   * @return false if there's no reading for that time
+   */
+  default boolean sampleAt(double timestampSeconds, GyroIOInputs inputs) {
+    return false;
+  }
+
+  /**
+   * <> steps any physics model forward
+   *
+   * @param omegaRadiansPerSecond how fast the robot is turning
+   *                              (counterclockwise positive)
+   * @param dtSeconds             how much time passed since the last call
+   */
+  default void simulationPeriodic(
+    double omegaRadiansPerSecond,
+    double dtSeconds
+  ) {}
+}
@@ -0,0 +1,35 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import frc.robot.Constants.DriveTrain.DriveConstants;
+
+/**
+ * <> the navx on the robot. readings come from the navx's own updates (see
+ * {@link NavXGyroService}), so reading it never waits on the navx and every
+ * reading has the time the navx measured it
+ */
+public class GyroIONavX implements GyroIO {
+
+  private final NavXGyroService m_service = new NavXGyroService(
+    DriveConstants.kNavXUpdateRateHz,
+    DriveConstants.kNavXHistoryCapacity
+  );
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    m_service.latest(inputs);
+  }
+
+  @Override
+  public void reset() {
+    m_service.reset();
+  }
+
+  @Override
+  public boolean sampleAt(double timestampSeconds, GyroIOInputs inputs) {
+    return m_service.sampleAt(timestampSeconds, inputs);
+  }
+}
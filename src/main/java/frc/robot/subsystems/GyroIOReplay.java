@@ -0,0 +1,28 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * <> plays back recorded gyro readings. whoever is replaying fills in
+ * {@link #inputs} before each loop
+ */
+public class GyroIOReplay implements GyroIO {
+
+  public final GyroIOInputs inputs = new GyroIOInputs();
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    inputs.connected = this.inputs.connected;
+    inputs.angleDegrees = this.inputs.angleDegrees;
+    inputs.rateDegreesPerSecond = this.inputs.rateDegreesPerSecond;
+    inputs.pitchDegrees = this.inputs.pitchDegrees;
+    inputs.rollDegrees = this.inputs.rollDegrees;
+    inputs.timestampSeconds = this.inputs.timestampSeconds;
+  }
+
+  // <> recorded readings already include any resets
+  @Override
+  public void reset() {}
+}
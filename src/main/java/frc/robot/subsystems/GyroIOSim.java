@@ -0,0 +1,42 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * <> a perfect navx (no drift or noise) that follows whatever the wheels say
+ * the robot did
+ */
+public class GyroIOSim implements GyroIO {
+
+  private double m_angleDegrees = 0;
+  private double m_rateDegreesPerSecond = 0;
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    inputs.connected = true;
+    inputs.angleDegrees = m_angleDegrees;
+    inputs.rateDegreesPerSecond = m_rateDegreesPerSecond;
+    inputs.pitchDegrees = 0;
+    inputs.rollDegrees = 0;
+    inputs.timestampSeconds = Timer.getFPGATimestamp();
+  }
+
+  @Override
+  public void reset() {
+    m_angleDegrees = 0;
+  }
+
+  @Override
+  public void simulationPeriodic(
+    double omegaRadiansPerSecond,
+    double dtSeconds
+  ) {
+    // <> the navx is clockwise positive
+    m_rateDegreesPerSecond = -Math.toDegrees(omegaRadiansPerSecond);
+    m_angleDegrees += m_rateDegreesPerSecond * dtSeconds;
+  }
+}
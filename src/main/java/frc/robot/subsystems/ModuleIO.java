@@ -0,0 +1,93 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * <> everything a {@link SwerveModule} needs from its hardware. the real
+ * spark maxes ({@link ModuleIOSparkMax}), the physics model
+ * ({@link ModuleIOSim}) and recorded data ({@link ModuleIOReplay}) all look
+ * the same to the module, so the drivetrain logic can run without a robot
+ */
+public interface ModuleIO {
+  /**
+   * <> every sensor reading the module uses, filled in once a loop so the
+   * hardware is read in one place
+   */
+  class ModuleIOInputs {
+
+    public double drivePositionMeters = 0;
+    public double driveVelocityMetersPerSecond = 0;
+
+    // <> raw absolute encoder reading (no chassis offset), 0 to 2 pi
+    public double turningPositionRadians = 0;
+
+    // <> what the driving motor controller is actually putting out
+    public double driveAppliedVolts = 0;
+  }
+
+  /**
+   * <> reads every sensor into inputs
+   *
+   * @param inputs filled with the latest readings
+   */
+  void updateInputs(ModuleIOInputs inputs);
+
+  /**
+   * <> gets the hardware into the configuration in Constants
+   *
+   * @return how many motor controllers had to be reflashed
+   */
+  default int configure() {
+    return 0;
+  }
+
+  /**
+   * <> runs the driving velocity loop
+   *
+   * @param metersPerSecond wheel speed setpoint
+   */
+  void setDriveVelocity(double metersPerSecond);
+
+  /**
+   * <> open loop driving, for characterization
+   *
+   * @param volts voltage to apply to the driving motor
+   */
+  void setDriveVoltage(double volts);
+
+  /**
+   * <> runs the turning position loop
+   *
+   * @param radians raw absolute encoder setpoint, 0 to 2 pi
+   */
+  void setTurningPosition(double radians);
+
+  /** <> zero output on the driving motor */
+  void stopDriving();
+
+  /** <> zero output on the turning motor */
+  void stopTurning();
+
+  /** <> makes the driving encoder read 0 */
+  void resetDriveEncoder();
+
+  /**
+   * <> changes how often the hardware reports each reading
+   *
+   * @param driving profile for the driving motor controller
+   * @param turning profile for the turning motor controller
+   */
+  default void applyStatusFrames(
+    StatusFrameProfile driving,
+    StatusFrameProfile turning
+  ) {}
+
+  /**
+   * <> steps any physics model forward
+   *
+   * @param dtSeconds how much time passed since the last call
+   */
+  default void simulationPeriodic(double dtSeconds) {}
+}
@@ -0,0 +1,68 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * <> plays back recorded module readings. whoever is replaying fills in
+ * {@link #inputs} before each loop, and whatever the module commands is kept
+ * so it can be compared against what was recorded
+ */
+public class ModuleIOReplay implements ModuleIO {
+
+  public final ModuleIOInputs inputs = new ModuleIOInputs();
+
+  // <> last commands, NaN means stopped
+  private double m_driveVelocitySetpoint = Double.NaN;
+  private double m_turningPositionSetpoint = Double.NaN;
+
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
+    inputs.drivePositionMeters = this.inputs.drivePositionMeters;
+    inputs.driveVelocityMetersPerSecond =
+      this.inputs.driveVelocityMetersPerSecond;
+    inputs.turningPositionRadians = this.inputs.turningPositionRadians;
+    inputs.driveAppliedVolts = this.inputs.driveAppliedVolts;
+  }
+
+  @Override
+  public void setDriveVelocity(double metersPerSecond) {
+    m_driveVelocitySetpoint = metersPerSecond;
+  }
+
+  // <> open loop isn't a velocity setpoint, so it counts as stopped
+  @Override
+  public void setDriveVoltage(double volts) {
+    m_driveVelocitySetpoint = Double.NaN;
+  }
+
+  @Override
+  public void setTurningPosition(double radians) {
+    m_turningPositionSetpoint = radians;
+  }
+
+  @Override
+  public void stopDriving() {
+    m_driveVelocitySetpoint = Double.NaN;
+  }
+
+  @Override
+  public void stopTurning() {
+    m_turningPositionSetpoint = Double.NaN;
+  }
+
+  // <> recorded readings already include any resets
+  @Override
+  public void resetDriveEncoder() {}
+
+  /** @return last driving velocity setpoint, NaN if stopped */
+  public double getDriveVelocitySetpoint() {
+    return m_driveVelocitySetpoint;
+  }
+
+  /** @return last turning position setpoint, NaN if stopped */
+  public double getTurningPositionSetpoint() {
+    return m_turningPositionSetpoint;
+  }
+}
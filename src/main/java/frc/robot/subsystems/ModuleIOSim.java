@@ -0,0 +1,173 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.Constants.DriveTrain.ModuleConstants;
+
+/**
+ * <> physics model of one MAXSwerve module for simulation: a NEO through the
+ * driving reduction and a NEO through the steering reduction. rev's sim
+ * doesn't run the spark max closed loops, so the same pid gains from
+ * Constants are run here (velocity on the driving motor, wrapped position on
+ * the turning motor) against whatever setpoint was last sent
+ */
+public class ModuleIOSim implements ModuleIO {
+
+  private final DCMotorSim m_drivingMotor = new DCMotorSim(
+    DCMotor.getNEO(1),
+    ModuleConstants.EncoderFactors.kDrivingMotorReduction,
+    ModuleConstants.Simulation.kDrivingMoiKgMetersSq
+  );
+  private final DCMotorSim m_turningMotor = new DCMotorSim(
+    DCMotor.getNEO(1),
+    ModuleConstants.Simulation.kTurningMotorReduction,
+    ModuleConstants.Simulation.kTurningMoiKgMetersSq
+  );
+
+  // <> last thing sent to each spark max, stopped means 0 duty cycle
+  private boolean m_drivingClosedLoop = false;
+  private boolean m_drivingVoltage = false;
+  private double m_drivingReference = 0;
+  private boolean m_turningClosedLoop = false;
+  private double m_turningReference = 0;
+
+  // <> what the driving encoder was reset to, in meters of wheel travel
+  private double m_drivingEncoderOffset = 0;
+
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
+    inputs.drivePositionMeters = getDrivingPosition();
+    inputs.driveVelocityMetersPerSecond = getDrivingVelocity();
+    inputs.turningPositionRadians = getTurningPosition();
+    inputs.driveAppliedVolts =
+      drivingOutput() * RobotController.getBatteryVoltage();
+  }
+
+  @Override
+  public void setDriveVelocity(double metersPerSecond) {
+    m_drivingReference = metersPerSecond;
+    m_drivingClosedLoop = true;
+    m_drivingVoltage = false;
+  }
+
+  @Override
+  public void setDriveVoltage(double volts) {
+    m_drivingReference = volts;
+    m_drivingClosedLoop = false;
+    m_drivingVoltage = true;
+  }
+
+  @Override
+  public void setTurningPosition(double radians) {
+    m_turningReference = radians;
+    m_turningClosedLoop = true;
+  }
+
+  @Override
+  public void stopDriving() {
+    m_drivingReference = 0;
+    m_drivingClosedLoop = false;
+    m_drivingVoltage = false;
+  }
+
+  @Override
+  public void stopTurning() {
+    m_turningReference = 0;
+    m_turningClosedLoop = false;
+  }
+
+  @Override
+  public void resetDriveEncoder() {
+    m_drivingEncoderOffset = wheelDistanceMeters();
+  }
+
+  @Override
+  public void simulationPeriodic(double dtSeconds) {
+    double voltage = RobotController.getBatteryVoltage();
+    double step = ModuleConstants.Simulation.kStepSeconds;
+
+    for (double elapsed = 0; elapsed < dtSeconds - 1e-9; elapsed += step) {
+      double dt = Math.min(step, dtSeconds - elapsed);
+
+      m_drivingMotor.setInputVoltage(drivingOutput() * voltage);
+      m_turningMotor.setInputVoltage(turningOutput() * voltage);
+      m_drivingMotor.update(dt);
+      m_turningMotor.update(dt);
+    }
+  }
+
+  // <> duty cycle the driving spark max would apply right now
+  private double drivingOutput() {
+    if (m_drivingVoltage) {
+      return MathUtil.clamp(
+        m_drivingReference / RobotController.getBatteryVoltage(),
+        -1,
+        1
+      );
+    }
+    if (!m_drivingClosedLoop) {
+      return MathUtil.clamp(m_drivingReference, -1, 1);
+    }
+    double error = m_drivingReference - getDrivingVelocity();
+    return MathUtil.clamp(
+      ModuleConstants.PIDF.kDrivingP *
+      error +
+      ModuleConstants.PIDF.kDrivingFF *
+      m_drivingReference,
+      ModuleConstants.PIDF.kDrivingMinOutput,
+      ModuleConstants.PIDF.kDrivingMaxOutput
+    );
+  }
+
+  // <> duty cycle the turning spark max would apply right now
+  private double turningOutput() {
+    if (!m_turningClosedLoop) {
+      return MathUtil.clamp(m_turningReference, -1, 1);
+    }
+    // <> position pid wrapping is on, so take the short way around
+    double error = MathUtil.inputModulus(
+      m_turningReference - getTurningPosition(),
+      -Math.PI,
+      Math.PI
+    );
+    return MathUtil.clamp(
+      ModuleConstants.PIDF.kTurningP * error,
+      ModuleConstants.PIDF.kTurningMinOutput,
+      ModuleConstants.PIDF.kTurningMaxOutput
+    );
+  }
+
+  private double wheelDistanceMeters() {
+    return (
+      m_drivingMotor.getAngularPositionRad() *
+      ModuleConstants.PhysicalProperties.kWheelDiameterMeters /
+      2
+    );
+  }
+
+  private double getDrivingPosition() {
+    return wheelDistanceMeters() - m_drivingEncoderOffset;
+  }
+
+  private double getDrivingVelocity() {
+    return (
+      m_drivingMotor.getAngularVelocityRadPerSec() *
+      ModuleConstants.PhysicalProperties.kWheelDiameterMeters /
+      2
+    );
+  }
+
+  private double getTurningPosition() {
+    return MathUtil.inputModulus(
+      m_turningMotor.getAngularPositionRad(),
+      0,
+      2 * Math.PI
+    );
+  }
+}
@@ -0,0 +1,281 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.revrobotics.AbsoluteEncoder;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkMaxAbsoluteEncoder.Type;
+import com.revrobotics.SparkMaxPIDController;
+import frc.robot.Constants.DriveTrain.ModuleConstants;
+import frc.robot.util.ConfigHashStore;
+import java.util.Arrays;
+
+/** <> a MAXSwerve module's two spark maxes, NEOs and through bore encoder */
+public class ModuleIOSparkMax implements ModuleIO {
+
+  private final CANSparkMax m_drivingSparkMax;
+  private final CANSparkMax m_turningSparkMax;
+
+  private final RelativeEncoder m_drivingEncoder;
+  private final AbsoluteEncoder m_turningEncoder;
+
+  private final SparkMaxPIDController m_drivingPIDController;
+  private final SparkMaxPIDController m_turningPIDController;
+
+  // <> hashes of everything configure() would burn into each spark max. if
+  // <> a spark max was last configured with the same hash, it's skipped
+  private static final int kDrivingConfigHash = Arrays.hashCode(
+    new double[] {
+      ModuleConstants.kConfigVersion,
+      ModuleConstants.EncoderFactors.kDrivingEncoderPositionFactor,
+      ModuleConstants.EncoderFactors.kDrivingEncoderVelocityFactor,
+      ModuleConstants.PIDF.kDrivingP,
+      ModuleConstants.PIDF.kDrivingI,
+      ModuleConstants.PIDF.kDrivingD,
+      ModuleConstants.PIDF.kDrivingFF,
+      ModuleConstants.PIDF.kDrivingMinOutput,
+      ModuleConstants.PIDF.kDrivingMaxOutput,
+      ModuleConstants.kDrivingMotorIdleMode.ordinal(),
+      ModuleConstants.kDrivingMotorCurrentLimit,
+    }
+  );
+  private static final int kTurningConfigHash = Arrays.hashCode(
+    new double[] {
+      ModuleConstants.kConfigVersion,
+      ModuleConstants.EncoderFactors.kTurningEncoderPositionFactor,
+      ModuleConstants.EncoderFactors.kTurningEncoderVelocityFactor,
+      ModuleConstants.PhysicalProperties.kTurningEncoderInverted ? 1 : 0,
+      ModuleConstants.kTurningEncoderPositionPIDMinInput,
+      ModuleConstants.kTurningEncoderPositionPIDMaxInput,
+      ModuleConstants.PIDF.kTurningP,
+      ModuleConstants.PIDF.kTurningI,
+      ModuleConstants.PIDF.kTurningD,
+      ModuleConstants.PIDF.kTurningFF,
+      ModuleConstants.PIDF.kTurningMinOutput,
+      ModuleConstants.PIDF.kTurningMaxOutput,
+      ModuleConstants.kTurningMotorIdleMode.ordinal(),
+      ModuleConstants.kTurningMotorCurrentLimit,
+    }
+  );
+
+  /**
+   * <> sets up the spark maxes with a driving and turning can id. they aren't
+   * configured until {@link #configure()} is called
+   */
+  public ModuleIOSparkMax(int drivingCANId, int turningCANId) {
+    // <> initilize spark maxes
+    m_drivingSparkMax = new CANSparkMax(drivingCANId, MotorType.kBrushless);
+    m_turningSparkMax = new CANSparkMax(turningCANId, MotorType.kBrushless);
+
+    // <> setup encoders
+    m_drivingEncoder = m_drivingSparkMax.getEncoder();
+    m_turningEncoder = m_turningSparkMax.getAbsoluteEncoder(Type.kDutyCycle);
+
+    // <> setup pid controllers
+    m_drivingPIDController = m_drivingSparkMax.getPIDController();
+    m_turningPIDController = m_turningSparkMax.getPIDController();
+  }
+
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
+    inputs.drivePositionMeters = m_drivingEncoder.getPosition();
+    inputs.driveVelocityMetersPerSecond = m_drivingEncoder.getVelocity();
+    inputs.turningPositionRadians = m_turningEncoder.getPosition();
+    inputs.driveAppliedVolts =
+      m_drivingSparkMax.getAppliedOutput() * m_drivingSparkMax.getBusVoltage();
+  }
+
+  /**
+   * <> gets both spark maxes into the configuration in Constants. a spark max
+   * only gets factory reset, configured and flashed if its config has changed
+   * since the last time it was burned (or if it doesn't read back right, like
+   * after being swapped), which keeps boots fast and saves flash wear.
+   * modules don't share anything, so this can be called on several modules
+   * at once from different threads
+   *
+   * @return how many spark maxes had to be reflashed (0 to 2)
+   */
+  @Override
+  public int configure() {
+    int reflashed = 0;
+
+    boolean drivingCurrent =
+      ConfigHashStore.matches(m_drivingSparkMax.getDeviceId(), kDrivingConfigHash) &&
+      drivingConfigReadsBack();
+    if (!drivingCurrent) {
+      configureDriving();
+      ConfigHashStore.save(m_drivingSparkMax.getDeviceId(), kDrivingConfigHash);
+      reflashed++;
+    }
+
+    boolean turningCurrent =
+      ConfigHashStore.matches(m_turningSparkMax.getDeviceId(), kTurningConfigHash) &&
+      turningConfigReadsBack();
+    if (!turningCurrent) {
+      configureTurning();
+      ConfigHashStore.save(m_turningSparkMax.getDeviceId(), kTurningConfigHash);
+      reflashed++;
+    }
+
+    return reflashed;
+  }
+
+  // <> a couple of parameters that are different from factory defaults, so a
+  // <> reset or swapped spark max gets caught even if the hash file matches
+  private boolean drivingConfigReadsBack() {
+    return (
+      closeEnough(
+        m_drivingEncoder.getPositionConversionFactor(),
+        ModuleConstants.EncoderFactors.kDrivingEncoderPositionFactor
+      ) &&
+      closeEnough(m_drivingPIDController.getP(), ModuleConstants.PIDF.kDrivingP)
+    );
+  }
+
+  private boolean turningConfigReadsBack() {
+    return (
+      closeEnough(
+        m_turningEncoder.getPositionConversionFactor(),
+        ModuleConstants.EncoderFactors.kTurningEncoderPositionFactor
+      ) &&
+      closeEnough(m_turningPIDController.getP(), ModuleConstants.PIDF.kTurningP) &&
+      m_turningPIDController.getPositionPIDWrappingEnabled()
+    );
+  }
+
+  // <> the spark max stores parameters as floats
+  private static boolean closeEnough(double actual, double expected) {
+    return Math.abs(actual - expected) <= 1e-6 * Math.max(1, Math.abs(expected));
+  }
+
+  private void configureDriving() {
+    // <> factory reset spark max to get it to a known state
+    m_drivingSparkMax.restoreFactoryDefaults();
+
+    m_drivingPIDController.setFeedbackDevice(m_drivingEncoder);
+
+    // <> apply position and velocity conversion factors
+    m_drivingEncoder.setPositionConversionFactor(
+      ModuleConstants.EncoderFactors.kDrivingEncoderPositionFactor
+    );
+    m_drivingEncoder.setVelocityConversionFactor(
+      ModuleConstants.EncoderFactors.kDrivingEncoderVelocityFactor
+    );
+
+    // <> set p, i, and d terms for driving
+    m_drivingPIDController.setP(ModuleConstants.PIDF.kDrivingP);
+    m_drivingPIDController.setI(ModuleConstants.PIDF.kDrivingI);
+    m_drivingPIDController.setD(ModuleConstants.PIDF.kDrivingD);
+    m_drivingPIDController.setFF(ModuleConstants.PIDF.kDrivingFF);
+    m_drivingPIDController.setOutputRange(
+      ModuleConstants.PIDF.kDrivingMinOutput,
+      ModuleConstants.PIDF.kDrivingMaxOutput
+    );
+
+    // <> set idle mode and current limit
+    m_drivingSparkMax.setIdleMode(ModuleConstants.kDrivingMotorIdleMode);
+    m_drivingSparkMax.setSmartCurrentLimit(
+      ModuleConstants.kDrivingMotorCurrentLimit
+    );
+
+    // <> save configuration in case of a brown out
+    m_drivingSparkMax.burnFlash();
+  }
+
+  private void configureTurning() {
+    // <> factory reset spark max to get it to a known state
+    m_turningSparkMax.restoreFactoryDefaults();
+
+    m_turningPIDController.setFeedbackDevice(m_turningEncoder);
+
+    // <> apply position and velocity conversion factors
+    m_turningEncoder.setPositionConversionFactor(
+      ModuleConstants.EncoderFactors.kTurningEncoderPositionFactor
+    );
+    m_turningEncoder.setVelocityConversionFactor(
+      ModuleConstants.EncoderFactors.kTurningEncoderVelocityFactor
+    );
+
+    // <> invert the turning encoder
+    m_turningEncoder.setInverted(
+      ModuleConstants.PhysicalProperties.kTurningEncoderInverted
+    );
+
+    // <> enable pid wrap on 0 to 2 pi, as the wheels rotate freely
+    m_turningPIDController.setPositionPIDWrappingEnabled(true);
+    m_turningPIDController.setPositionPIDWrappingMinInput(
+      ModuleConstants.kTurningEncoderPositionPIDMinInput
+    );
+    m_turningPIDController.setPositionPIDWrappingMaxInput(
+      ModuleConstants.kTurningEncoderPositionPIDMaxInput
+    );
+
+    // <> set p, i, and d terms for turning
+    m_turningPIDController.setP(ModuleConstants.PIDF.kTurningP);
+    m_turningPIDController.setI(ModuleConstants.PIDF.kTurningI);
+    m_turningPIDController.setD(ModuleConstants.PIDF.kTurningD);
+    m_turningPIDController.setFF(ModuleConstants.PIDF.kTurningFF);
+    m_turningPIDController.setOutputRange(
+      ModuleConstants.PIDF.kTurningMinOutput,
+      ModuleConstants.PIDF.kTurningMaxOutput
+    );
+
+    // <> set idle mode and current limit
+    m_turningSparkMax.setIdleMode(ModuleConstants.kTurningMotorIdleMode);
+    m_turningSparkMax.setSmartCurrentLimit(
+      ModuleConstants.kTurningMotorCurrentLimit
+    );
+
+    // <> save configuration in case of a brown out
+    m_turningSparkMax.burnFlash();
+  }
+
+  @Override
+  public void setDriveVelocity(double metersPerSecond) {
+    m_drivingPIDController.setReference(
+      metersPerSecond,
+      CANSparkMax.ControlType.kVelocity
+    );
+  }
+
+  @Override
+  public void setDriveVoltage(double volts) {
+    m_drivingPIDController.setReference(volts, CANSparkMax.ControlType.kVoltage);
+  }
+
+  @Override
+  public void setTurningPosition(double radians) {
+    m_turningPIDController.setReference(
+      radians,
+      CANSparkMax.ControlType.kPosition
+    );
+  }
+
+  @Override
+  public void stopDriving() {
+    m_drivingSparkMax.set(0);
+  }
+
+  @Override
+  public void stopTurning() {
+    m_turningSparkMax.set(0);
+  }
+
+  @Override
+  public void resetDriveEncoder() {
+    m_drivingEncoder.setPosition(0);
+  }
+
+  @Override
+  public void applyStatusFrames(
+    StatusFrameProfile driving,
+    StatusFrameProfile turning
+  ) {
+    driving.apply(m_drivingSparkMax);
+    turning.apply(m_turningSparkMax);
+  }
+}
@@ -0,0 +1,226 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.kauailabs.navx.AHRSProtocol.AHRSUpdateBase;
+import com.kauailabs.navx.frc.AHRS;
+import com.kauailabs.navx.frc.ITimestampedDataSubscriber;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.SPI;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <> gets every update the navx sends (through its data callback, at the
+ * navx's own update rate) instead of polling it, and keeps the recent ones
+ * with timestamps so anyone can ask for the latest heading or the heading at
+ * some time in the past
+ *
+ * <p><> updates go into a fixed size ring buffer with one writer (the navx's
+ * io thread) and any number of readers, nobody locks or allocates. a reader
+ * copies a sample out and then checks that the writer didn't start
+ * overwriting it in the meantime, and tries again if it did
+ *
+ * <p><> yaw is unwrapped (it keeps counting past 180 like getAngle()) and
+ * zeroed in software, so a reset takes effect immediately on every reader
+ * no matter what the navx firmware does with a yaw reset
+ */
+public class NavXGyroService implements ITimestampedDataSubscriber {
+
+  // <> every sample is [fpga timestamp, yaw, rate, pitch, roll]
+  private static final int kTimestamp = 0;
+  private static final int kYaw = 1;
+  private static final int kRate = 2;
+  private static final int kPitch = 3;
+  private static final int kRoll = 4;
+  private static final int kWidth = 5;
+
+  private final AHRS m_ahrs;
+  private final int m_capacity;
+  private final double[] m_buffer;
+
+  // <> writes started / finished, a slot is only safe to read while no write
+  // <> has started on it since it was finished
+  private final AtomicLong m_writesStarted = new AtomicLong();
+  private final AtomicLong m_writesFinished = new AtomicLong();
+
+  // <> unwrapped yaw that counts as 0, set by reset()
+  private volatile double m_zeroDegrees = 0;
+
+  // <> only touched by the writer
+  private double m_lastRawYaw = Double.NaN;
+  private double m_unwrappedYaw = 0;
+  private long m_lastSensorMillis = Long.MIN_VALUE;
+  private double m_clockOffsetSeconds = Double.POSITIVE_INFINITY;
+
+  /**
+   * <> connects to the navx on the mxp spi port and starts listening
+   *
+   * @param updateRateHz how often the navx should send updates (4 to 200)
+   * @param capacity     how many updates to keep
+   */
+  public NavXGyroService(int updateRateHz, int capacity) {
+    m_ahrs = new AHRS(SPI.Port.kMXP, (byte) updateRateHz);
+    m_capacity = capacity;
+    m_buffer = new double[capacity * kWidth];
+    m_ahrs.registerCallback(this, null);
+  }
+
+  // <> runs on the navx's io thread
+  @Override
+  public void timestampedDataReceived(
+    long systemTimestamp,
+    long sensorTimestamp,
+    AHRSUpdateBase data,
+    Object context
+  ) {
+    double rawYaw = data.yaw;
+    if (Double.isNaN(m_lastRawYaw)) {
+      m_unwrappedYaw = rawYaw;
+    } else {
+      m_unwrappedYaw += MathUtil.inputModulus(rawYaw - m_lastRawYaw, -180, 180);
+    }
+    m_lastRawYaw = rawYaw;
+
+    // <> the navx timestamps updates with its own millisecond clock. the
+    // <> smallest gap between that and when the rio got the update is the
+    // <> best guess at the offset between the clocks (the rest of the gap is
+    // <> transport delay). a timestamp going backwards means the navx rebooted
+    if (sensorTimestamp < m_lastSensorMillis) {
+      m_clockOffsetSeconds = Double.POSITIVE_INFINITY;
+    }
+    m_lastSensorMillis = sensorTimestamp;
+    m_clockOffsetSeconds =
+      Math.min(m_clockOffsetSeconds, (systemTimestamp - sensorTimestamp) / 1000.0);
+
+    long write = m_writesFinished.get();
+    m_writesStarted.set(write + 1);
+    // <> keep the slot writes from moving ahead of the started count, or a
+    // <> reader could check intact() before seeing its slot is being reused
+    VarHandle.storeStoreFence();
+    int offset = (int) (write % m_capacity) * kWidth;
+    m_buffer[offset + kTimestamp] = sensorTimestamp / 1000.0 + m_clockOffsetSeconds;
+    m_buffer[offset + kYaw] = m_unwrappedYaw;
+    // <> the ahrs has already worked out the rate for this update
+    m_buffer[offset + kRate] = m_ahrs.getRate();
+    m_buffer[offset + kPitch] = data.pitch;
+    m_buffer[offset + kRoll] = data.roll;
+    m_writesFinished.lazySet(write + 1);
+  }
+
+  /**
+   * <> copies the newest update into inputs
+   *
+   * @param inputs filled with the newest update, or marked disconnected if
+   *               there hasn't been one
+   */
+  public void latest(GyroIO.GyroIOInputs inputs) {
+    while (true) {
+      long finished = m_writesFinished.get();
+      if (finished == 0) {
+        inputs.connected = false;
+        return;
+      }
+      int offset = (int) ((finished - 1) % m_capacity) * kWidth;
+      double timestamp = m_buffer[offset + kTimestamp];
+      double yaw = m_buffer[offset + kYaw];
+      double rate = m_buffer[offset + kRate];
+      double pitch = m_buffer[offset + kPitch];
+      double roll = m_buffer[offset + kRoll];
+      if (!intact(finished - 1)) {
+        continue;
+      }
+
+      inputs.connected = m_ahrs.isConnected();
+      inputs.timestampSeconds = timestamp;
+      inputs.angleDegrees = yaw - m_zeroDegrees;
+      inputs.rateDegreesPerSecond = rate;
+      inputs.pitchDegrees = pitch;
+      inputs.rollDegrees = roll;
+      return;
+    }
+  }
+
+  /**
+   * <> the heading at some point in the recent past, interpolated between the
+   * two updates around it
+   *
+   * @param timestampSeconds FPGA time
+   * @param inputs           filled in if this returns true
+   * @return false if that time is newer than the newest update or older than
+   *         the oldest one kept
+   */
+  public boolean sampleAt(double timestampSeconds, GyroIO.GyroIOInputs inputs) {
+    while (true) {
+      long finished = m_writesFinished.get();
+      // <> the oldest slot might be the next one written, so skip it
+      long oldest = Math.max(0, finished - m_capacity + 1);
+
+      long after = -1;
+      for (long i = finished - 1; i >= oldest; i--) {
+        if (m_buffer[(int) (i % m_capacity) * kWidth + kTimestamp] <= timestampSeconds) {
+          break;
+        }
+        after = i;
+      }
+      if (after == -1 || after == oldest) {
+        // <> newer than everything, older than everything, or nothing yet
+        return false;
+      }
+
+      int a = (int) ((after - 1) % m_capacity) * kWidth;
+      int b = (int) (after % m_capacity) * kWidth;
+      double t0 = m_buffer[a + kTimestamp];
+      double t1 = m_buffer[b + kTimestamp];
+      double fraction = t1 > t0 ? (timestampSeconds - t0) / (t1 - t0) : 1;
+      double yaw = lerp(m_buffer[a + kYaw], m_buffer[b + kYaw], fraction);
+      double rate = lerp(m_buffer[a + kRate], m_buffer[b + kRate], fraction);
+      double pitch = lerp(m_buffer[a + kPitch], m_buffer[b + kPitch], fraction);
+      double roll = lerp(m_buffer[a + kRoll], m_buffer[b + kRoll], fraction);
+      if (!intact(after - 1)) {
+        continue;
+      }
+
+      inputs.connected = true;
+      inputs.timestampSeconds = timestampSeconds;
+      inputs.angleDegrees = yaw - m_zeroDegrees;
+      inputs.rateDegreesPerSecond = rate;
+      inputs.pitchDegrees = pitch;
+      inputs.rollDegrees = roll;
+      return true;
+    }
+  }
+
+  // <> true if nothing has started overwriting write number index (and so
+  // <> everything newer than it) since the reader copied it
+  private boolean intact(long index) {
+    VarHandle.acquireFence();
+    return m_writesStarted.get() <= index + m_capacity;
+  }
+
+  private static double lerp(double a, double b, double fraction) {
+    return a + (b - a) * fraction;
+  }
+
+  /** <> makes the current heading read 0 */
+  public void reset() {
+    while (true) {
+      long finished = m_writesFinished.get();
+      if (finished == 0) {
+        return;
+      }
+      double yaw = m_buffer[(int) ((finished - 1) % m_capacity) * kWidth + kYaw];
+      if (intact(finished - 1)) {
+        m_zeroDegrees = yaw;
+        return;
+      }
+    }
+  }
+
+  /** @return the navx */
+  public AHRS getAHRS() {
+    return m_ahrs;
+  }
+}
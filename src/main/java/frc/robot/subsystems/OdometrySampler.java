@@ -0,0 +1,159 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * <> reads the module encoders and the gyro on its own notifier thread, faster
+ * than the main loop, and queues up timestamped samples for the drive
+ * subsystem to feed into odometry
+ *
+ * <p><> the queue is a fixed size ring buffer with one writer (the notifier)
+ * and one reader (the main loop), so neither side ever locks or allocates.
+ * if the main loop falls far enough behind that the queue fills up, new
+ * samples are dropped and counted
+ */
+public class OdometrySampler {
+
+  private final SwerveModule[] m_modules;
+  private final DoubleSupplier m_headingRadians;
+  private final Notifier m_notifier;
+
+  // <> every sample is [timestamp, heading, distances..., angles...]
+  private final int m_sampleWidth;
+  private final int m_capacity;
+  private final double[] m_buffer;
+
+  // <> scratch space for reading the modules on the notifier thread
+  private final double[] m_distances;
+  private final double[] m_angles;
+
+  // <> total samples written / read, the difference is how many are queued
+  private final AtomicLong m_writeCount = new AtomicLong();
+  private final AtomicLong m_readCount = new AtomicLong();
+  private volatile long m_droppedSamples = 0;
+
+  // <> timestamp and heading of the last sample handed out by poll()
+  private double m_lastTimestamp;
+  private double m_lastHeadingRadians;
+
+  /**
+   * <> construct a sampler (it won't run until {@link #start(double)} is called)
+   *
+   * @param modules        modules to read, in kinematics order
+   * @param headingRadians supplies the robot's heading
+   * @param capacity       how many samples can be queued before dropping
+   */
+  public OdometrySampler(
+    SwerveModule[] modules,
+    DoubleSupplier headingRadians,
+    int capacity
+  ) {
+    m_modules = modules;
+    m_headingRadians = headingRadians;
+    m_sampleWidth = 2 + modules.length * 2;
+    m_capacity = capacity;
+    m_buffer = new double[capacity * m_sampleWidth];
+    m_distances = new double[modules.length];
+    m_angles = new double[modules.length];
+
+    m_notifier = new Notifier(this::sample);
+    m_notifier.setName("OdometrySampler");
+  }
+
+  /**
+   * <> start sampling
+   *
+   * @param frequencyHz how many times a second to read the sensors
+   */
+  public void start(double frequencyHz) {
+    m_notifier.startPeriodic(1.0 / frequencyHz);
+  }
+
+  public void stop() {
+    m_notifier.stop();
+  }
+
+  // <> runs on the notifier thread
+  private void sample() {
+    long write = m_writeCount.get();
+    if (write - m_readCount.get() >= m_capacity) {
+      m_droppedSamples++;
+      return;
+    }
+
+    int offset = (int) (write % m_capacity) * m_sampleWidth;
+    m_buffer[offset] = Timer.getFPGATimestamp();
+    m_buffer[offset + 1] = m_headingRadians.getAsDouble();
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].sample(i, m_distances, m_angles);
+    }
+    System.arraycopy(m_distances, 0, m_buffer, offset + 2, m_modules.length);
+    System.arraycopy(
+      m_angles,
+      0,
+      m_buffer,
+      offset + 2 + m_modules.length,
+      m_modules.length
+    );
+
+    // <> publish the sample only after it's completely written
+    m_writeCount.lazySet(write + 1);
+  }
+
+  /**
+   * <> takes the oldest queued sample, if there is one
+   *
+   * @param distancesMeters filled with the module distances
+   * @param anglesRadians   filled with the module angles
+   * @return false if there was nothing queued
+   */
+  public boolean poll(double[] distancesMeters, double[] anglesRadians) {
+    long read = m_readCount.get();
+    if (read == m_writeCount.get()) {
+      return false;
+    }
+
+    int offset = (int) (read % m_capacity) * m_sampleWidth;
+    m_lastTimestamp = m_buffer[offset];
+    m_lastHeadingRadians = m_buffer[offset + 1];
+    System.arraycopy(m_buffer, offset + 2, distancesMeters, 0, m_modules.length);
+    System.arraycopy(
+      m_buffer,
+      offset + 2 + m_modules.length,
+      anglesRadians,
+      0,
+      m_modules.length
+    );
+
+    // <> hand the slot back to the writer
+    m_readCount.lazySet(read + 1);
+    return true;
+  }
+
+  /** <> throws away everything that's queued */
+  public void clear() {
+    m_readCount.set(m_writeCount.get());
+  }
+
+  /** @return FPGA timestamp of the last polled sample in seconds */
+  public double getLastTimestamp() {
+    return m_lastTimestamp;
+  }
+
+  /** @return heading of the last polled sample in radians */
+  public double getLastHeadingRadians() {
+    return m_lastHeadingRadians;
+  }
+
+  /** @return how many samples were dropped because the queue was full */
+  public long getDroppedSamples() {
+    return m_droppedSamples;
+  }
+}
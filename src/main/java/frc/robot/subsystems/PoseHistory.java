@@ -0,0 +1,168 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * <> fixed size circular history of timestamped poses, kept in primitive
+ * arrays so adding a sample never allocates. lookups binary search the
+ * timestamps (O(log n)) and linearly interpolate between the two closest
+ * samples
+ *
+ * <p><> this does the same job as wpilib's TimeInterpolatableBuffer, but
+ * that one stores a Pose2d in a TreeMap entry for every sample. it also
+ * interpolates along a twist instead of linearly, which only matters for
+ * samples much further apart than an odometry update
+ */
+public class PoseHistory {
+
+  private final int m_capacity;
+  private final double[] m_timestamps;
+  private final double[] m_x;
+  private final double[] m_y;
+  private final double[] m_theta;
+
+  // <> index of the oldest sample, and how many samples are stored
+  private int m_start = 0;
+  private int m_size = 0;
+
+  /**
+   * <> construct an empty history
+   *
+   * @param capacity how many samples to keep before overwriting the oldest
+   */
+  public PoseHistory(int capacity) {
+    m_capacity = capacity;
+    m_timestamps = new double[capacity];
+    m_x = new double[capacity];
+    m_y = new double[capacity];
+    m_theta = new double[capacity];
+  }
+
+  /**
+   * <> adds a sample. samples have to be added in time order, anything older
+   * than the newest sample is ignored
+   *
+   * @param timestampSeconds when the robot was at this pose
+   * @param x                x position in meters
+   * @param y                y position in meters
+   * @param thetaRadians     heading in radians
+   */
+  public void add(
+    double timestampSeconds,
+    double x,
+    double y,
+    double thetaRadians
+  ) {
+    if (m_size > 0 && timestampSeconds <= m_timestamps[physical(m_size - 1)]) {
+      return;
+    }
+
+    int index;
+    if (m_size < m_capacity) {
+      index = physical(m_size);
+      m_size++;
+    } else {
+      // <> full, so overwrite the oldest sample
+      index = m_start;
+      m_start = (m_start + 1) % m_capacity;
+    }
+
+    m_timestamps[index] = timestampSeconds;
+    m_x[index] = x;
+    m_y[index] = y;
+    m_theta[index] = thetaRadians;
+  }
+
+  /** <> removes every sample */
+  public void clear() {
+    m_start = 0;
+    m_size = 0;
+  }
+
+  /** @return how many samples are stored */
+  public int size() {
+    return m_size;
+  }
+
+  /**
+   * <> finds where the robot was at a given time. times outside of the
+   * history are clamped to the oldest or newest sample
+   *
+   * @param timestampSeconds time to look up
+   * @param pose             filled with [x, y, theta]
+   * @return false if the history is empty
+   */
+  public boolean sample(double timestampSeconds, double[] pose) {
+    if (m_size == 0) {
+      return false;
+    }
+
+    // <> clamp to the ends of the history
+    int newest = physical(m_size - 1);
+    if (timestampSeconds >= m_timestamps[newest]) {
+      copy(newest, pose);
+      return true;
+    }
+    if (timestampSeconds <= m_timestamps[m_start]) {
+      copy(m_start, pose);
+      return true;
+    }
+
+    // <> binary search for the first sample after the timestamp
+    int low = 0;
+    int high = m_size - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (m_timestamps[physical(mid)] <= timestampSeconds) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    int after = physical(low);
+    int before = physical(low - 1);
+    double t =
+      (timestampSeconds - m_timestamps[before]) /
+      (m_timestamps[after] - m_timestamps[before]);
+
+    pose[0] = m_x[before] + (m_x[after] - m_x[before]) * t;
+    pose[1] = m_y[before] + (m_y[after] - m_y[before]) * t;
+    pose[2] =
+      m_theta[before] +
+      MathUtil.angleModulus(m_theta[after] - m_theta[before]) *
+      t;
+    return true;
+  }
+
+  /**
+   * <> same as {@link #sample(double, double[])}, but builds a pose
+   *
+   * @param timestampSeconds time to look up
+   * @return the pose, or null if the history is empty
+   */
+  public Pose2d getPose(double timestampSeconds) {
+    double[] pose = new double[3];
+    if (!sample(timestampSeconds, pose)) {
+      return null;
+    }
+    return new Pose2d(pose[0], pose[1], new Rotation2d(pose[2]));
+  }
+
+  // <> converts an index counted from the oldest sample into an array index
+  private int physical(int logicalIndex) {
+    return (m_start + logicalIndex) % m_capacity;
+  }
+
+  private void copy(int index, double[] pose) {
+    pose[0] = m_x[index];
+    pose[1] = m_y[index];
+    pose[2] = m_theta[index];
+  }
+}
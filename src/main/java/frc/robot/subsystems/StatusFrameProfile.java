@@ -0,0 +1,77 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+
+/**
+ * <> a set of periodic status frame periods for a spark max. what's in each
+ * frame (from rev's docs):
+ *
+ * <ul>
+ *   <li>status 0: applied output, faults, sticky faults
+ *   <li>status 1: motor velocity, temperature, voltage, current
+ *   <li>status 2: motor position
+ *   <li>status 3: analog sensor
+ *   <li>status 4: alternate encoder
+ *   <li>status 5: duty cycle absolute encoder position
+ *   <li>status 6: duty cycle absolute encoder velocity
+ * </ul>
+ *
+ * <p><> the spark max doesn't save these when flash is burned, so they have to
+ * be applied every boot (and can be swapped whenever the mode changes)
+ */
+public class StatusFrameProfile {
+
+  private final String m_name;
+  private final int[] m_periodsMs;
+
+  /**
+   * <> construct a profile, all periods are in milliseconds
+   *
+   * @param name    shows up in telemetry
+   * @param status0 applied output and faults
+   * @param status1 velocity, temperature, voltage, current
+   * @param status2 position
+   * @param status3 analog sensor
+   * @param status4 alternate encoder
+   * @param status5 absolute encoder position
+   * @param status6 absolute encoder velocity
+   */
+  public StatusFrameProfile(
+    String name,
+    int status0,
+    int status1,
+    int status2,
+    int status3,
+    int status4,
+    int status5,
+    int status6
+  ) {
+    m_name = name;
+    m_periodsMs =
+      new int[] { status0, status1, status2, status3, status4, status5, status6 };
+  }
+
+  /**
+   * <> sends every frame period to a spark max
+   *
+   * @param sparkMax the controller to configure
+   */
+  public void apply(CANSparkMax sparkMax) {
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus0, m_periodsMs[0]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus1, m_periodsMs[1]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus2, m_periodsMs[2]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus3, m_periodsMs[3]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus4, m_periodsMs[4]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus5, m_periodsMs[5]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus6, m_periodsMs[6]);
+  }
+
+  public String getName() {
+    return m_name;
+  }
+}
@@ -4,129 +4,147 @@
 
 package frc.robot.subsystems;
 
-import com.revrobotics.AbsoluteEncoder;
-import com.revrobotics.CANSparkMax;
-import com.revrobotics.CANSparkMaxLowLevel.MotorType;
-import com.revrobotics.RelativeEncoder;
-import com.revrobotics.SparkMaxAbsoluteEncoder.Type;
-import com.revrobotics.SparkMaxPIDController;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
 import frc.robot.Constants.DriveTrain.ModuleConstants;
+import frc.robot.util.InputLatencyTracker;
+import frc.robot.util.SetpointCache;
 
 public class SwerveModule {
 
-  private final CANSparkMax m_drivingSparkMax;
-  private final CANSparkMax m_turningSparkMax;
+  // <> stands in for the different kinds of modes a spark max can be in, so
+  // <> the setpoint caches know when the mode changes
+  private enum Mode {
+    kStopped,
+    kClosedLoop,
+    kVoltage,
+  }
+
+  private final ModuleIO m_io;
+
+  // <> this loop's sensor readings, see updateInputs()
+  private final ModuleIO.ModuleIOInputs m_inputs = new ModuleIO.ModuleIOInputs();
 
-  private final RelativeEncoder m_drivingEncoder;
-  private final AbsoluteEncoder m_turningEncoder;
+  // <> FPGA time m_inputs were read at, also used as "now" for the setpoint
+  // <> caches so a loop doesn't read the clock once per module
+  private double m_inputsTimestamp = 0;
 
-  private final SparkMaxPIDController m_drivingPIDController;
-  private final SparkMaxPIDController m_turningPIDController;
+  // <> separate readings for the odometry sampler's thread, see sample()
+  private final ModuleIO.ModuleIOInputs m_sampledInputs = new ModuleIO.ModuleIOInputs();
 
-  private Rotation2d m_chassisAngularOffset;
-  private SwerveModuleState m_desiredState = new SwerveModuleState(
-    0.0,
-    new Rotation2d()
+  // <> separate readings for the control loop's thread, see DriveControlLoop
+  private final ModuleIO.ModuleIOInputs m_controlInputs = new ModuleIO.ModuleIOInputs();
+  private double m_controlTimestamp = 0;
+
+  // <> keep the same setpoint from being sent over CAN every loop
+  private final SetpointCache m_drivingSetpoint = new SetpointCache(
+    ModuleConstants.CANWrites.kDrivingSetpointEpsilon,
+    ModuleConstants.CANWrites.kSetpointKeepAliveSeconds
+  );
+  private final SetpointCache m_turningSetpoint = new SetpointCache(
+    ModuleConstants.CANWrites.kTurningSetpointEpsilon,
+    ModuleConstants.CANWrites.kSetpointKeepAliveSeconds
   );
 
+  private final Rotation2d m_chassisAngularOffset;
+  // <> last desired state (before optimizing)
+  private double m_desiredSpeed = 0;
+  private double m_desiredAngleRadians = 0;
+
   /**
    * <> construct a swerve module with a driving id, can id, and chassis angular
-   * offset
+   * offset. in simulation the spark maxes are replaced by a physics model.
+   * nothing is configured until {@link #configure()} is called
    */
   public SwerveModule(
     int drivingCANId,
     int turningCANId,
     Rotation2d chassisAngularOffset
   ) {
-    // <> initilize spark maxes
-    m_drivingSparkMax = new CANSparkMax(drivingCANId, MotorType.kBrushless);
-    m_turningSparkMax = new CANSparkMax(turningCANId, MotorType.kBrushless);
-
-    // <> factory reset spark maxes to get them to a known state
-    m_drivingSparkMax.restoreFactoryDefaults();
-    m_turningSparkMax.restoreFactoryDefaults();
-
-    // <> setup encoders
-    m_drivingEncoder = m_drivingSparkMax.getEncoder();
-    m_turningEncoder = m_turningSparkMax.getAbsoluteEncoder(Type.kDutyCycle);
-
-    // <> setup pid controllers
-    m_drivingPIDController = m_drivingSparkMax.getPIDController();
-    m_turningPIDController = m_turningSparkMax.getPIDController();
-    m_drivingPIDController.setFeedbackDevice(m_drivingEncoder);
-    m_turningPIDController.setFeedbackDevice(m_turningEncoder);
-
-    // <> apply position and velocity conversion factors
-    m_drivingEncoder.setPositionConversionFactor(
-      ModuleConstants.EncoderFactors.kDrivingEncoderPositionFactor
-    );
-    m_drivingEncoder.setVelocityConversionFactor(
-      ModuleConstants.EncoderFactors.kDrivingEncoderVelocityFactor
-    );
-    m_turningEncoder.setPositionConversionFactor(
-      ModuleConstants.EncoderFactors.kTurningEncoderPositionFactor
-    );
-    m_turningEncoder.setVelocityConversionFactor(
-      ModuleConstants.EncoderFactors.kTurningEncoderVelocityFactor
+    this(
+      RobotBase.isSimulation()
+        ? new ModuleIOSim()
+        : new ModuleIOSparkMax(drivingCANId, turningCANId),
+      chassisAngularOffset
     );
+  }
 
-    // <> invert the turning encoder
-    m_turningEncoder.setInverted(
-      ModuleConstants.PhysicalProperties.kTurningEncoderInverted
-    );
+  /**
+   * <> construct a swerve module on top of any hardware (real, simulated, or
+   * replayed)
+   *
+   * @param io                   the module's hardware
+   * @param chassisAngularOffset the module's angular offset
+   */
+  public SwerveModule(ModuleIO io, Rotation2d chassisAngularOffset) {
+    m_io = io;
+    m_chassisAngularOffset = chassisAngularOffset;
+  }
 
-    // <> enable pid wrap on 0 to 2 pi, as the wheels rotate freely
-    m_turningPIDController.setPositionPIDWrappingEnabled(true);
-    m_turningPIDController.setPositionPIDWrappingMinInput(
-      ModuleConstants.kTurningEncoderPositionPIDMinInput
-    );
-    m_turningPIDController.setPositionPIDWrappingMaxInput(
-      ModuleConstants.kTurningEncoderPositionPIDMaxInput
-    );
+  /**
+   * <> gets the hardware into the configuration in Constants (see
+   * {@link ModuleIOSparkMax#configure()}), then takes the current angle as
+   * the desired one and zeroes the driving encoder. modules don't share
+   * anything, so this can be called on several modules at once from
+   * different threads
+   *
+   * @return how many spark maxes had to be reflashed (0 to 2)
+   */
+  public int configure() {
+    int reflashed = m_io.configure();
 
-    // <> set p, i, and d terms for driving
-    m_drivingPIDController.setP(ModuleConstants.PIDF.kDrivingP);
-    m_drivingPIDController.setI(ModuleConstants.PIDF.kDrivingI);
-    m_drivingPIDController.setD(ModuleConstants.PIDF.kDrivingD);
-    m_drivingPIDController.setFF(ModuleConstants.PIDF.kDrivingFF);
-    m_drivingPIDController.setOutputRange(
-      ModuleConstants.PIDF.kDrivingMinOutput,
-      ModuleConstants.PIDF.kDrivingMaxOutput
-    );
+    // <> initilize desired state to the current state
+    updateInputs();
+    m_desiredAngleRadians = m_inputs.turningPositionRadians;
 
-    // <> set p, i, and d terms for turning
-    m_turningPIDController.setP(ModuleConstants.PIDF.kTurningP);
-    m_turningPIDController.setI(ModuleConstants.PIDF.kTurningI);
-    m_turningPIDController.setD(ModuleConstants.PIDF.kTurningD);
-    m_turningPIDController.setFF(ModuleConstants.PIDF.kTurningFF);
-    m_turningPIDController.setOutputRange(
-      ModuleConstants.PIDF.kTurningMinOutput,
-      ModuleConstants.PIDF.kTurningMaxOutput
-    );
+    // <> reset driving encoder
+    resetEncoders();
 
-    // <> set idle modes and current limits
-    m_drivingSparkMax.setIdleMode(ModuleConstants.kDrivingMotorIdleMode);
-    m_turningSparkMax.setIdleMode(ModuleConstants.kTurningMotorIdleMode);
-    m_drivingSparkMax.setSmartCurrentLimit(
-      ModuleConstants.kDrivingMotorCurrentLimit
-    );
-    m_turningSparkMax.setSmartCurrentLimit(
-      ModuleConstants.kTurningMotorCurrentLimit
-    );
+    return reflashed;
+  }
 
-    // <> save configurations in case of a brown out
-    m_drivingSparkMax.burnFlash();
-    m_turningSparkMax.burnFlash();
+  /**
+   * <> reads every sensor once, everything else this loop uses these readings.
+   * call at the start of every loop
+   */
+  public void updateInputs() {
+    updateInputs(Timer.getFPGATimestamp());
+  }
 
-    // <> initilize desired state to the current state
-    m_chassisAngularOffset = chassisAngularOffset;
-    m_desiredState.angle = new Rotation2d(m_turningEncoder.getPosition());
+  /**
+   * <> same as {@link #updateInputs()}, for when every module in a loop
+   * should share one timestamp
+   *
+   * @param timestampSeconds FPGA time the readings are being taken at
+   */
+  public void updateInputs(double timestampSeconds) {
+    m_io.updateInputs(m_inputs);
+    m_inputsTimestamp = timestampSeconds;
+  }
 
-    // <> reset driving encoder
-    m_drivingEncoder.setPosition(0);
+  /** @return this loop's sensor readings (don't modify them) */
+  public ModuleIO.ModuleIOInputs getInputs() {
+    return m_inputs;
+  }
+
+  /**
+   * <> reads the sensors straight from the hardware without touching this
+   * loop's readings, for the odometry sampler's thread only
+   *
+   * @param index     where to put this module's readings
+   * @param distances filled with the driving distance in meters
+   * @param angles    filled with the angle in radians (chassis offset applied)
+   */
+  public void sample(int index, double[] distances, double[] angles) {
+    m_io.updateInputs(m_sampledInputs);
+    distances[index] = m_sampledInputs.drivePositionMeters;
+    angles[index] =
+      m_sampledInputs.turningPositionRadians -
+      m_chassisAngularOffset.getRadians();
   }
 
   /**
@@ -137,10 +155,8 @@ public class SwerveModule {
   public SwerveModuleState getState() {
     // <> return a swerve module state adjusted for the chasis angular offset
     return new SwerveModuleState(
-      m_drivingEncoder.getVelocity(),
-      new Rotation2d(
-        m_turningEncoder.getPosition() - m_chassisAngularOffset.getRadians()
-      )
+      getDriveVelocity(),
+      new Rotation2d(getAngleRadians())
     );
   }
 
@@ -154,8 +170,16 @@ public class SwerveModule {
   }
 
   public void stop() {
-    m_turningSparkMax.set(0);
-    m_drivingSparkMax.set(0);
+    stop(m_inputsTimestamp);
+  }
+
+  private void stop(double now) {
+    if (m_turningSetpoint.shouldSend(0, Mode.kStopped, now)) {
+      m_io.stopTurning();
+    }
+    if (m_drivingSetpoint.shouldSend(0, Mode.kStopped, now)) {
+      m_io.stopDriving();
+    }
   }
 
   /**
@@ -166,10 +190,37 @@ public class SwerveModule {
   public SwerveModulePosition getPosition() {
     // <> return a new swerve module position adjusted for the angular offset
     return new SwerveModulePosition(
-      m_drivingEncoder.getPosition(),
-      new Rotation2d(
-        m_turningEncoder.getPosition() - m_chassisAngularOffset.getRadians()
-      )
+      getDrivePositionMeters(),
+      new Rotation2d(getAngleRadians())
+    );
+  }
+
+  /**
+   * <> same as {@link #getPosition()} without building any objects
+   *
+   * @return distance the driving wheel has traveled in meters
+   */
+  public double getDrivePositionMeters() {
+    return m_inputs.drivePositionMeters;
+  }
+
+  /**
+   * <> same as {@link #getState()} without building any objects
+   *
+   * @return driving wheel speed in meters per second
+   */
+  public double getDriveVelocity() {
+    return m_inputs.driveVelocityMetersPerSecond;
+  }
+
+  /**
+   * <> same as {@link #getRotation()} without building any objects
+   *
+   * @return module angle in radians, adjusted for the chassis angular offset
+   */
+  public double getAngleRadians() {
+    return (
+      m_inputs.turningPositionRadians - m_chassisAngularOffset.getRadians()
     );
   }
 
@@ -181,6 +232,175 @@ public class SwerveModule {
   public void setDesiredState(
     SwerveModuleState desiredState,
     boolean allowLowSpeedTurning
+  ) {
+    setDesiredState(
+      desiredState.speedMetersPerSecond,
+      desiredState.angle.getRadians(),
+      allowLowSpeedTurning
+    );
+  }
+
+  /**
+   * <> same as {@link #setDesiredState(SwerveModuleState, boolean)} without
+   * building any objects
+   *
+   * @param speedMetersPerSecond desired driving speed
+   * @param angleRadians         desired angle, relative to the robot
+   */
+  public void setDesiredState(
+    double speedMetersPerSecond,
+    double angleRadians,
+    boolean allowLowSpeedTurning
+  ) {
+    boolean sent = setDesiredState(
+      speedMetersPerSecond,
+      angleRadians,
+      allowLowSpeedTurning,
+      m_inputs.turningPositionRadians,
+      m_inputsTimestamp
+    );
+    if (sent) {
+      InputLatencyTracker.getInstance().markCommanded();
+    }
+  }
+
+  // <> returns whether anything was sent
+  private boolean setDesiredState(
+    double speedMetersPerSecond,
+    double angleRadians,
+    boolean allowLowSpeedTurning,
+    double turningPositionRadians,
+    double now
+  ) {
+    // <> apply chasis angular offset, then turn around instead of turning
+    // <> more than 90 degrees (same as optimizeDesiredState())
+    double speed = speedMetersPerSecond;
+    double angle = MathUtil.angleModulus(
+      angleRadians + m_chassisAngularOffset.getRadians()
+    );
+    if (shouldReverse(angle, turningPositionRadians)) {
+      speed = -speed;
+      angle = MathUtil.angleModulus(angle + Math.PI);
+    }
+
+    // <> don't worry about turning the wheel if it's spinning a tiny amount
+    if (!allowLowSpeedTurning && Math.abs(speed) < ModuleConstants.kModuleMinSpeed) {
+      stop(now);
+      return false;
+    }
+
+    // <> command driving (only if the setpoint actually changed)
+    boolean sent = false;
+    if (m_drivingSetpoint.shouldSend(speed, Mode.kClosedLoop, now)) {
+      m_io.setDriveVelocity(speed);
+      sent = true;
+    }
+    if (m_turningSetpoint.shouldSend(angle, Mode.kClosedLoop, now)) {
+      m_io.setTurningPosition(angle);
+      sent = true;
+    }
+
+    // <> set the desired state to the calculated desired state
+    m_desiredSpeed = speedMetersPerSecond;
+    m_desiredAngleRadians = angleRadians;
+    return sent;
+  }
+
+  /**
+   * <> whether the wheel should turn around and drive backwards instead
+   * (the desired angle is more than 90 degrees from where it is)
+   *
+   * @param angleRadians           desired angle with the chassis offset applied
+   * @param turningPositionRadians raw turning encoder reading
+   */
+  static boolean shouldReverse(
+    double angleRadians,
+    double turningPositionRadians
+  ) {
+    return (
+      Math.abs(MathUtil.angleModulus(angleRadians - turningPositionRadians)) >
+      Math.PI / 2
+    );
+  }
+
+  /**
+   * <> reads the sensors into the control loop's own readings (this loop's
+   * readings belong to the main thread), for the control loop's thread only
+   *
+   * @param timestampSeconds FPGA time the readings are being taken at
+   */
+  public void updateControlInputs(double timestampSeconds) {
+    m_io.updateInputs(m_controlInputs);
+    m_controlTimestamp = timestampSeconds;
+  }
+
+  /**
+   * <> same as {@link #setDesiredState(double, double, boolean)} using the
+   * control loop's readings, for the control loop's thread only
+   *
+   * @param speedMetersPerSecond desired driving speed
+   * @param angleRadians         desired angle, relative to the robot
+   */
+  public void setDesiredStateFromControlLoop(
+    double speedMetersPerSecond,
+    double angleRadians,
+    boolean allowLowSpeedTurning
+  ) {
+    setDesiredState(
+      speedMetersPerSecond,
+      angleRadians,
+      allowLowSpeedTurning,
+      m_controlInputs.turningPositionRadians,
+      m_controlTimestamp
+    );
+  }
+
+  /** <> same as {@link #stop()}, for the control loop's thread only */
+  public void stopFromControlLoop() {
+    stop(m_controlTimestamp);
+  }
+
+  /**
+   * <> open loop driving with the wheel held straight (pointing at the front
+   * of the robot), for characterization
+   *
+   * @param volts voltage to apply to the driving motor
+   */
+  public void setDriveVoltage(double volts) {
+    double now = Timer.getFPGATimestamp();
+    if (m_drivingSetpoint.shouldSend(volts, Mode.kVoltage, now)) {
+      m_io.setDriveVoltage(volts);
+    }
+    double straight = m_chassisAngularOffset.getRadians();
+    if (m_turningSetpoint.shouldSend(straight, Mode.kClosedLoop, now)) {
+      m_io.setTurningPosition(straight);
+    }
+  }
+
+  /**
+   * <> reads the sensors straight from the hardware into someone else's
+   * readings, for the characterization capture thread
+   *
+   * @param inputs filled with the latest readings
+   */
+  public void sampleCharacterization(ModuleIO.ModuleIOInputs inputs) {
+    m_io.updateInputs(inputs);
+  }
+
+  /**
+   * <> what {@link #setDesiredState(SwerveModuleState, boolean)} used to do
+   * with wpilib's objects (it does the same math with primitives now), kept
+   * for the benchmark to compare against
+   *
+   * @param desiredState           desired {@link SwerveModuleState}
+   * @param chassisAngularOffset   the module's angular offset
+   * @param turningPositionRadians raw turning encoder reading
+   * @return the state to command the motor controllers with
+   */
+  static SwerveModuleState optimizeDesiredState(
+    SwerveModuleState desiredState,
+    Rotation2d chassisAngularOffset,
+    double turningPositionRadians
   ) {
     // <> apply chasis angular offset
     SwerveModuleState correctedDesiredState = new SwerveModuleState();
@@ -188,36 +408,46 @@ public class SwerveModule {
     correctedDesiredState.speedMetersPerSecond =
       desiredState.speedMetersPerSecond;
     correctedDesiredState.angle =
-      desiredState.angle.plus(m_chassisAngularOffset);
+      desiredState.angle.plus(chassisAngularOffset);
 
     // <> optimize state to avoid turning more than 90 degrees
-    SwerveModuleState optimizedDesiredState = SwerveModuleState.optimize(
+    return SwerveModuleState.optimize(
       correctedDesiredState,
-      new Rotation2d(m_turningEncoder.getPosition())
+      new Rotation2d(turningPositionRadians)
     );
+  }
 
-    // <> don't worry about turning the wheel if it's spinning a tiny amount
-    if (!allowLowSpeedTurning && Math.abs(optimizedDesiredState.speedMetersPerSecond) < ModuleConstants.kModuleMinSpeed) {
-      stop();
-      return;
-    }
-
-    // <> command driving
-    m_drivingPIDController.setReference(
-      optimizedDesiredState.speedMetersPerSecond,
-      CANSparkMax.ControlType.kVelocity
-    );
-    m_turningPIDController.setReference(
-      optimizedDesiredState.angle.getRadians(),
-      CANSparkMax.ControlType.kPosition
-    );
+  /**
+   * <> changes how often the spark maxes send each status frame
+   *
+   * @param driving profile for the driving spark max
+   * @param turning profile for the turning spark max
+   */
+  public void applyStatusFrames(
+    StatusFrameProfile driving,
+    StatusFrameProfile turning
+  ) {
+    m_io.applyStatusFrames(driving, turning);
+  }
 
-    // <> set the desired state to the calculated desired state
-    m_desiredState = desiredState;
+  /** <> makes sure the next setpoints go out no matter what */
+  public void invalidateSetpoints() {
+    m_drivingSetpoint.invalidate();
+    m_turningSetpoint.invalidate();
   }
 
   /** <> zeroes all encoders */
   public void resetEncoders() {
-    m_drivingEncoder.setPosition(0);
+    m_io.resetDriveEncoder();
+    m_inputs.drivePositionMeters = 0;
+  }
+
+  /**
+   * <> steps the physics model (only does anything in simulation)
+   *
+   * @param dtSeconds how much time passed since the last call
+   */
+  public void simulationPeriodic(double dtSeconds) {
+    m_io.simulationPeriodic(dtSeconds);
   }
 }
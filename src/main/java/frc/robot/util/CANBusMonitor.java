@@ -0,0 +1,81 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.Telemetry;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <> samples CAN bus utilization every few loops and keeps a running average
+ * for whichever status frame profile is active, so the bus load of different
+ * profiles (or of no profile at all) can be compared on the dashboard
+ */
+public final class CANBusMonitor {
+
+  private static CANBusMonitor instance;
+
+  // <> running average for one profile
+  private static final class Average {
+
+    private final String m_key;
+    private double m_total = 0;
+    private long m_samples = 0;
+
+    private Average(String label) {
+      m_key = "CAN/" + label + " avg utilization %";
+    }
+  }
+
+  private final Map<String, Average> m_averages = new HashMap<>();
+  private Average m_current;
+  private final int m_utilizationChannel;
+  private long m_cycles = 0;
+
+  private CANBusMonitor() {
+    m_utilizationChannel =
+      TelemetryLog.getInstance().registerChannel("can/bus utilization");
+    setLabel("default");
+  }
+
+  /** @return the one monitor */
+  public static synchronized CANBusMonitor getInstance() {
+    if (instance == null) {
+      instance = new CANBusMonitor();
+    }
+    return instance;
+  }
+
+  /**
+   * <> starts charging samples to a different label (call when the status
+   * frame profile changes)
+   *
+   * @param label usually the profile name
+   */
+  public void setLabel(String label) {
+    m_current = m_averages.computeIfAbsent(label, Average::new);
+  }
+
+  /** <> call once a loop */
+  public void update() {
+    if (++m_cycles % Telemetry.kCANSamplePeriodCycles != 0) {
+      return;
+    }
+
+    // <> fraction from 0 to 1
+    double utilization = RobotController.getCANStatus().percentBusUtilization;
+    m_current.m_total += utilization;
+    m_current.m_samples++;
+
+    TelemetryLog.getInstance().set(m_utilizationChannel, utilization * 100);
+    SmartDashboard.putNumber("CAN/utilization %", utilization * 100);
+    SmartDashboard.putNumber(
+      m_current.m_key,
+      m_current.m_total / m_current.m_samples * 100
+    );
+  }
+}
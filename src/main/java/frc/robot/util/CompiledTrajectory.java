@@ -0,0 +1,166 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * <> a trajectory resampled at a fixed time step into primitive arrays, so
+ * sampling is an index computation and a lerp instead of Trajectory.sample's
+ * binary search over State objects (which also builds a new State every call).
+ * compiling is slow-ish, do it at boot or off the main thread
+ *
+ * <p><> headings are unwrapped (they keep counting past +-pi) so they can be
+ * lerped directly, wrap them if a -pi to pi angle is needed
+ */
+public class CompiledTrajectory {
+
+  // <> indices into the array filled by sample()
+  public static final int kX = 0;
+  public static final int kY = 1;
+  public static final int kHeading = 2;
+  public static final int kVelocity = 3;
+  public static final int kAcceleration = 4;
+  public static final int kCurvature = 5;
+  public static final int kSampleSize = 6;
+
+  private final double m_dt;
+  private final double m_inverseDt;
+  private final double m_totalTime;
+  private final int m_count;
+
+  // <> the last interval ends at the total time, so it's usually shorter
+  private final double m_lastIntervalStart;
+  private final double m_inverseLastInterval;
+
+  private final double[] m_x;
+  private final double[] m_y;
+  private final double[] m_heading;
+  private final double[] m_velocity;
+  private final double[] m_acceleration;
+  private final double[] m_curvature;
+
+  private final double m_endHeading;
+
+  /**
+   * <> resamples a trajectory
+   *
+   * @param trajectory the trajectory to compile
+   * @param dt         time step in seconds
+   */
+  public CompiledTrajectory(Trajectory trajectory, double dt) {
+    m_dt = dt;
+    m_inverseDt = 1 / dt;
+    m_totalTime = trajectory.getTotalTimeSeconds();
+
+    // <> one sample every dt, plus one exactly at the end, so every time in
+    // <> the trajectory has a sample on both sides
+    int count = (int) Math.ceil(m_totalTime / dt) + 1;
+    // <> rounding can put the second to last sample on the end itself
+    while (count > 2 && (count - 2) * dt >= m_totalTime) {
+      count--;
+    }
+    m_count = count;
+    m_lastIntervalStart = Math.max(m_count - 2, 0) * dt;
+    m_inverseLastInterval =
+      m_count > 1 ? 1 / (m_totalTime - m_lastIntervalStart) : 0;
+    m_x = new double[m_count];
+    m_y = new double[m_count];
+    m_heading = new double[m_count];
+    m_velocity = new double[m_count];
+    m_acceleration = new double[m_count];
+    m_curvature = new double[m_count];
+
+    for (int i = 0; i < m_count; i++) {
+      Trajectory.State state = trajectory.sample(
+        i == m_count - 1 ? m_totalTime : i * dt
+      );
+      m_x[i] = state.poseMeters.getX();
+      m_y[i] = state.poseMeters.getY();
+      m_velocity[i] = state.velocityMetersPerSecond;
+      m_acceleration[i] = state.accelerationMetersPerSecondSq;
+      m_curvature[i] = state.curvatureRadPerMeter;
+
+      double heading = state.poseMeters.getRotation().getRadians();
+      m_heading[i] =
+        i == 0
+          ? heading
+          : m_heading[i - 1] + MathUtil.angleModulus(heading - m_heading[i - 1]);
+    }
+
+    m_endHeading =
+      trajectory
+        .getStates()
+        .get(trajectory.getStates().size() - 1)
+        .poseMeters.getRotation()
+        .getRadians();
+  }
+
+  /**
+   * <> fills sample with the state at a time (clamped to the trajectory)
+   *
+   * @param timeSeconds time since the start of the trajectory
+   * @param sample      filled with the values at the indices above, must be
+   *                    at least {@link #kSampleSize} long
+   */
+  public void sample(double timeSeconds, double[] sample) {
+    if (timeSeconds >= m_totalTime) {
+      copy(m_count - 1, sample);
+      return;
+    }
+    double position = timeSeconds * m_inverseDt;
+    if (position <= 0) {
+      copy(0, sample);
+      return;
+    }
+    int index = (int) position;
+    if (index >= m_count - 1) {
+      copy(m_count - 1, sample);
+      return;
+    }
+
+    double fraction =
+      index == m_count - 2
+        ? (timeSeconds - m_lastIntervalStart) * m_inverseLastInterval
+        : position - index;
+    sample[kX] = lerp(m_x, index, fraction);
+    sample[kY] = lerp(m_y, index, fraction);
+    sample[kHeading] = lerp(m_heading, index, fraction);
+    sample[kVelocity] = lerp(m_velocity, index, fraction);
+    sample[kAcceleration] = lerp(m_acceleration, index, fraction);
+    sample[kCurvature] = lerp(m_curvature, index, fraction);
+  }
+
+  private void copy(int index, double[] sample) {
+    sample[kX] = m_x[index];
+    sample[kY] = m_y[index];
+    sample[kHeading] = m_heading[index];
+    sample[kVelocity] = m_velocity[index];
+    sample[kAcceleration] = m_acceleration[index];
+    sample[kCurvature] = m_curvature[index];
+  }
+
+  private static double lerp(double[] values, int index, double fraction) {
+    return values[index] + (values[index + 1] - values[index]) * fraction;
+  }
+
+  public double getTotalTimeSeconds() {
+    return m_totalTime;
+  }
+
+  public double getDtSeconds() {
+    return m_dt;
+  }
+
+  public int getSampleCount() {
+    return m_count;
+  }
+
+  /** @return the final heading in radians (-pi to pi) */
+  public double getEndHeadingRadians() {
+    return m_endHeading;
+  }
+}
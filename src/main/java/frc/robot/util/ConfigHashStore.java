@@ -0,0 +1,82 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * <> remembers a hash of the configuration last burned into each CAN device,
+ * one small file per CAN id under the robot's operating directory
+ * (/home/lvuser on the rio). if the hash on file matches the config we want,
+ * the factory reset and flash burn can be skipped on boot
+ *
+ * <p><> different CAN ids use different files, so modules can be configured
+ * from several threads at once
+ */
+public final class ConfigHashStore {
+
+  private static final File kDirectory = new File(
+    Filesystem.getOperatingDirectory(),
+    "device-config"
+  );
+
+  private ConfigHashStore() {}
+
+  /**
+   * <> checks if a device was last configured with a given hash
+   *
+   * @param canId the device's CAN id
+   * @param hash  hash of the config we want
+   * @return true if the stored hash matches
+   */
+  public static boolean matches(int canId, int hash) {
+    File file = fileFor(canId);
+    if (!file.isFile()) {
+      return false;
+    }
+    try {
+      String stored = new String(
+        Files.readAllBytes(file.toPath()),
+        StandardCharsets.US_ASCII
+      )
+        .trim();
+      return stored.equals(Integer.toHexString(hash));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * <> records that a device now has a config (call after burning flash)
+   *
+   * @param canId the device's CAN id
+   * @param hash  hash of the config that was burned
+   */
+  public static void save(int canId, int hash) {
+    File file = fileFor(canId);
+    try {
+      kDirectory.mkdirs();
+      Files.write(
+        file.toPath(),
+        Integer.toHexString(hash).getBytes(StandardCharsets.US_ASCII)
+      );
+    } catch (IOException e) {
+      // <> not fatal, the device just gets reconfigured next boot too
+      DriverStation.reportWarning(
+        "couldn't save config hash for CAN id " + canId + ": " + e.getMessage(),
+        false
+      );
+    }
+  }
+
+  private static File fileFor(int canId) {
+    return new File(kDirectory, "can-" + canId + ".hash");
+  }
+}
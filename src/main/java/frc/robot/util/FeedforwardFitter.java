@@ -0,0 +1,282 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import frc.robot.Constants.DriveTrain.DriveConstants.Characterization;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <> fits a driving feedforward (volts = kS * sign(v) + kV * v + kA * a) to
+ * characterization captures with ordinary least squares. every module's
+ * samples go into the same fit. captures are flat arrays of rows:
+ * [timestamp, then volts, position, velocity for each module]
+ *
+ * <p><> quasistatic runs pin down kS and kV, dynamic runs pin down kA, so
+ * add one of each (both directions) before trusting the numbers
+ */
+public class FeedforwardFitter {
+
+  public static final int kModules = 4;
+  public static final int kRowWidth = 1 + 3 * kModules;
+
+  private static final String[] kModuleNames = {
+    "front left",
+    "front right",
+    "rear left",
+    "rear right",
+  };
+
+  // <> normal equations, X^T X and X^T y for X = [sign(v), v, a]
+  private final double[][] m_xtx = new double[3][3];
+  private final double[] m_xty = new double[3];
+  private double m_yty = 0;
+  private double m_ySum = 0;
+  private long m_samples = 0;
+
+  /** <> the fitted gains */
+  public static final class Result {
+
+    public final double kS;
+    public final double kV;
+    public final double kA;
+    public final double rSquared;
+    public final long samples;
+
+    private Result(double kS, double kV, double kA, double rSquared, long samples) {
+      this.kS = kS;
+      this.kV = kV;
+      this.kA = kA;
+      this.rSquared = rSquared;
+      this.samples = samples;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "kS %.4f V, kV %.4f V/(m/s), kA %.4f V/(m/s^2), r^2 %.4f over %d samples (kDrivingFF ~ %.5f at 12 V)",
+        kS,
+        kV,
+        kA,
+        rSquared,
+        samples,
+        kV / 12
+      );
+    }
+  }
+
+  /**
+   * <> adds one capture to the fit. readings that didn't change since the
+   * last row (no new status frame yet) are skipped, and acceleration is a
+   * central difference between the neighboring new readings
+   *
+   * @param rows     the capture
+   * @param rowCount how many rows of it are filled in
+   */
+  public void add(double[] rows, int rowCount) {
+    int[] fresh = new int[rowCount];
+    for (int module = 0; module < kModules; module++) {
+      int volts = 1 + 3 * module;
+      int position = volts + 1;
+      int velocity = volts + 2;
+
+      int freshCount = 0;
+      for (int row = 0; row < rowCount; row++) {
+        if (
+          freshCount == 0 ||
+          rows[row * kRowWidth + position] !=
+          rows[fresh[freshCount - 1] * kRowWidth + position]
+        ) {
+          fresh[freshCount++] = row;
+        }
+      }
+
+      for (int i = 1; i < freshCount - 1; i++) {
+        int previous = fresh[i - 1] * kRowWidth;
+        int current = fresh[i] * kRowWidth;
+        int next = fresh[i + 1] * kRowWidth;
+
+        double v = rows[current + velocity];
+        double dt = rows[next] - rows[previous];
+        if (Math.abs(v) < Characterization.kMinFitVelocity || dt <= 0) {
+          continue;
+        }
+        double a = (rows[next + velocity] - rows[previous + velocity]) / dt;
+        addSample(rows[current + volts], v, a);
+      }
+    }
+  }
+
+  private void addSample(double volts, double velocity, double acceleration) {
+    double[] x = { Math.signum(velocity), velocity, acceleration };
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        m_xtx[i][j] += x[i] * x[j];
+      }
+      m_xty[i] += x[i] * volts;
+    }
+    m_yty += volts * volts;
+    m_ySum += volts;
+    m_samples++;
+  }
+
+  /**
+   * <> solves the fit with everything added so far
+   *
+   * @return the gains, or null if there isn't enough data to pin them down
+   */
+  public Result fit() {
+    double[] beta = solve(m_xtx, m_xty);
+    if (beta == null) {
+      return null;
+    }
+
+    // <> residual sum of squares straight from the normal equations
+    double residual = m_yty;
+    for (int i = 0; i < 3; i++) {
+      residual -= 2 * beta[i] * m_xty[i];
+      for (int j = 0; j < 3; j++) {
+        residual += beta[i] * m_xtx[i][j] * beta[j];
+      }
+    }
+    double mean = m_ySum / m_samples;
+    double total = m_yty - m_samples * mean * mean;
+    double rSquared = total <= 0 ? 0 : 1 - residual / total;
+
+    return new Result(beta[0], beta[1], beta[2], rSquared, m_samples);
+  }
+
+  // <> gaussian elimination with partial pivoting on a copy, null if singular
+  private static double[] solve(double[][] matrix, double[] vector) {
+    int n = vector.length;
+    double[][] a = new double[n][n + 1];
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(matrix[i], 0, a[i], 0, n);
+      a[i][n] = vector[i];
+    }
+
+    for (int column = 0; column < n; column++) {
+      int pivot = column;
+      for (int row = column + 1; row < n; row++) {
+        if (Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+          pivot = row;
+        }
+      }
+      if (Math.abs(a[pivot][column]) < 1e-12) {
+        return null;
+      }
+      double[] swap = a[column];
+      a[column] = a[pivot];
+      a[pivot] = swap;
+
+      for (int row = 0; row < n; row++) {
+        if (row == column) {
+          continue;
+        }
+        double factor = a[row][column] / a[column][column];
+        for (int k = column; k <= n; k++) {
+          a[row][k] -= factor * a[column][k];
+        }
+      }
+    }
+
+    double[] solution = new double[n];
+    for (int i = 0; i < n; i++) {
+      solution[i] = a[i][n] / a[i][i];
+    }
+    return solution;
+  }
+
+  /**
+   * <> writes a capture as csv next to the telemetry logs
+   *
+   * @param test     name of the test, goes in the file name
+   * @param rows     the capture
+   * @param rowCount how many rows of it are filled in
+   * @return where it was written
+   * @throws IOException if there's nowhere to write it
+   */
+  public static Path write(String test, double[] rows, int rowCount)
+    throws IOException {
+    File directory = TelemetryLog.findLogDirectory();
+    if (directory == null) {
+      throw new IOException("no writable log directory");
+    }
+    String name =
+      "characterization_" +
+      test +
+      "_" +
+      new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) +
+      ".csv";
+    Path csv = directory.toPath().resolve(name);
+
+    try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+      writer.write("timestamp");
+      for (String module : kModuleNames) {
+        writer.write(
+          "," + module + " volts," + module + " position," + module + " velocity"
+        );
+      }
+      writer.newLine();
+      for (int row = 0; row < rowCount; row++) {
+        for (int i = 0; i < kRowWidth; i++) {
+          if (i > 0) {
+            writer.write(',');
+          }
+          writer.write(Double.toString(rows[row * kRowWidth + i]));
+        }
+        writer.newLine();
+      }
+    }
+    return csv;
+  }
+
+  /**
+   * <> reads a capture written by {@link #write(String, double[], int)}
+   *
+   * @param csv the file
+   * @return the rows (rowCount is length / kRowWidth)
+   * @throws IOException if the file can't be read
+   */
+  public static double[] read(Path csv) throws IOException {
+    List<String> lines = Files.readAllLines(csv);
+    double[] rows = new double[(lines.size() - 1) * kRowWidth];
+    for (int row = 0; row < lines.size() - 1; row++) {
+      String[] values = lines.get(row + 1).split(",");
+      if (values.length != kRowWidth) {
+        throw new IOException(csv + " line " + (row + 2) + " has the wrong width");
+      }
+      for (int i = 0; i < kRowWidth; i++) {
+        rows[row * kRowWidth + i] = Double.parseDouble(values[i]);
+      }
+    }
+    return rows;
+  }
+
+  /** <> fits every capture given as an argument together */
+  public static void main(String... args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("usage: FeedforwardFitter <characterization csv>...");
+      System.exit(1);
+    }
+
+    FeedforwardFitter fitter = new FeedforwardFitter();
+    for (String arg : args) {
+      double[] rows = read(Paths.get(arg));
+      fitter.add(rows, rows.length / kRowWidth);
+    }
+    Result result = fitter.fit();
+    System.out.println(
+      result == null ? "not enough data to fit (run every test)" : result
+    );
+  }
+}
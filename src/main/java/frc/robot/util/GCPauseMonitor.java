@@ -0,0 +1,135 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * <> listens for the jvm's garbage collection notifications and queues up
+ * every collection's start time and duration for the main thread (see
+ * {@link LoopProfiler}) to match against loop overruns
+ *
+ * <p><> the notifications come in on a jvm thread some time after the
+ * collection, so the queue is a fixed size ring buffer with one writer (that
+ * thread) and one reader (the main loop), the same as OdometrySampler. if the
+ * main loop doesn't keep up, new collections are dropped and counted
+ *
+ * <p><> times are milliseconds since the jvm started, see
+ * {@link #uptimeMillis(long)}. the collections' own clock starts a little
+ * earlier than that, so the smallest gap between a collection ending and
+ * its notification arriving is taken as the offset between the two. for
+ * stop the world collectors (serial, parallel, G1's young collections) the
+ * duration is the pause
+ */
+public final class GCPauseMonitor implements NotificationListener {
+
+  // <> every entry is [start, duration], both in milliseconds
+  private static final int kWidth = 2;
+
+  private final int m_capacity;
+  private final double[] m_buffer;
+  private final AtomicLong m_writeCount = new AtomicLong();
+  private final AtomicLong m_readCount = new AtomicLong();
+  private volatile long m_droppedPauses = 0;
+
+  // <> only touched by the writer
+  private double m_clockOffsetMillis = Double.POSITIVE_INFINITY;
+
+  // <> System.nanoTime() when the jvm started, for uptimeMillis()
+  private final long m_jvmStartNanos;
+
+  /**
+   * <> construct a monitor (it won't hear anything until {@link #start()})
+   *
+   * @param capacity how many collections can be queued before dropping
+   */
+  public GCPauseMonitor(int capacity) {
+    m_capacity = capacity;
+    m_buffer = new double[capacity * kWidth];
+    m_jvmStartNanos =
+      System.nanoTime() -
+      ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000;
+  }
+
+  /** <> starts listening to every collector that sends notifications */
+  public void start() {
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter) {
+        ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+      }
+    }
+  }
+
+  // <> runs on a jvm notification thread
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (
+      !notification
+        .getType()
+        .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)
+    ) {
+      return;
+    }
+    GcInfo info = GarbageCollectionNotificationInfo
+      .from((CompositeData) notification.getUserData())
+      .getGcInfo();
+    m_clockOffsetMillis =
+      Math.min(
+        m_clockOffsetMillis,
+        uptimeMillis(System.nanoTime()) - info.getEndTime()
+      );
+
+    long write = m_writeCount.get();
+    if (write - m_readCount.get() >= m_capacity) {
+      m_droppedPauses++;
+      return;
+    }
+    int offset = (int) (write % m_capacity) * kWidth;
+    m_buffer[offset] = info.getStartTime() + m_clockOffsetMillis;
+    m_buffer[offset + 1] = info.getDuration();
+    m_writeCount.lazySet(write + 1);
+  }
+
+  /**
+   * <> takes the oldest queued collection, if there is one
+   *
+   * @param pause filled with [start, duration] in milliseconds
+   * @return false if there was nothing queued
+   */
+  public boolean poll(double[] pause) {
+    long read = m_readCount.get();
+    if (read == m_writeCount.get()) {
+      return false;
+    }
+    int offset = (int) (read % m_capacity) * kWidth;
+    pause[0] = m_buffer[offset];
+    pause[1] = m_buffer[offset + 1];
+    m_readCount.lazySet(read + 1);
+    return true;
+  }
+
+  /**
+   * <> converts a System.nanoTime() reading to the same clock as poll()
+   *
+   * @param nanoTime from System.nanoTime()
+   * @return milliseconds since the jvm started
+   */
+  public double uptimeMillis(long nanoTime) {
+    return (nanoTime - m_jvmStartNanos) / 1e6;
+  }
+
+  /** @return how many collections were dropped because the queue was full */
+  public long getDroppedPauses() {
+    return m_droppedPauses;
+  }
+}
@@ -0,0 +1,19 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * <> a {@link ShapingStage} that smooths its input, and so delays it. see
+ * {@link InputFilterHarness} for measuring the delay on real stick traces
+ */
+public interface InputFilter extends ShapingStage {
+  /**
+   * <> how far behind its input the output is for a slowly changing input,
+   * at the dt and input the filter saw most recently
+   *
+   * @return group delay in milliseconds
+   */
+  double getGroupDelayMillis();
+}
@@ -0,0 +1,272 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import frc.robot.Constants;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * <> runs stick traces through every {@link InputFilter} (set up from
+ * Constants.Joysticks) and prints how much each one lags and overshoots, so
+ * filters can be tuned with numbers instead of by feel. traces come from
+ * telemetry logs, or a made up one with steps, ramps and wiggles if no logs
+ * are given. run with "./gradlew filterReport -Plogs=a.bin,b.bin"
+ */
+public final class InputFilterHarness {
+
+  // <> stick channels logged by SwerveTeleopCommand
+  private static final String[] kStickChannels = {
+    "teleop/left x",
+    "teleop/left y",
+    "teleop/right x",
+  };
+
+  // <> longest lag looked for when lining the output up with the input
+  private static final double kMaxLagSeconds = 1.0;
+
+  // <> output outside the input's range over this long counts as overshoot
+  // <> (needs to be longer than the slowest filter takes to settle, or lag
+  // <> would get counted as overshoot)
+  private static final double kOvershootWindowSeconds = 2.0;
+
+  private static final double kSyntheticDtSeconds = 0.02;
+
+  private InputFilterHarness() {}
+
+  /** <> a stick's recorded position over time */
+  public static final class Trace {
+
+    public final String name;
+    public final double[] timestamps;
+    public final double[] values;
+
+    public Trace(String name, double[] timestamps, double[] values) {
+      this.name = name;
+      this.timestamps = timestamps;
+      this.values = values;
+    }
+  }
+
+  /** <> what one filter did to one trace */
+  public static final class Report {
+
+    // <> average of what the filter said its delay was
+    public double reportedDelayMillis;
+    // <> the shift that lines the output up best with the input
+    public double measuredLagMillis;
+    // <> furthest the output went outside the input's recent range
+    public double overshoot;
+    // <> rms difference from the input (with no shift)
+    public double rmsError;
+  }
+
+  /** @return every filter to compare, built from Constants.Joysticks */
+  public static Map<String, Supplier<InputFilter>> filters() {
+    Map<String, Supplier<InputFilter>> filters = new LinkedHashMap<>();
+    filters.put(
+      "single pole",
+      () ->
+        new ShapingStages.LowPass(
+          Constants.Joysticks.driveLowPassFilterStrength
+        )
+    );
+    filters.put(
+      "slew rate",
+      () -> new ShapingStages.RateLimit(Constants.Joysticks.driveRateLimit)
+    );
+    filters.put(
+      "one euro",
+      () ->
+        new ShapingStages.OneEuro(
+          Constants.Joysticks.oneEuroMinCutoffHz,
+          Constants.Joysticks.oneEuroBeta,
+          Constants.Joysticks.oneEuroDerivativeCutoffHz
+        )
+    );
+    return filters;
+  }
+
+  /**
+   * <> runs one trace through a fresh filter
+   *
+   * @param trace  the input
+   * @param filter a filter that hasn't been used yet
+   * @return lag and overshoot
+   */
+  public static Report measure(Trace trace, InputFilter filter) {
+    int length = trace.values.length;
+    double[] output = new double[length];
+    Report report = new Report();
+
+    for (int i = 0; i < length; i++) {
+      double dt = i == 0
+        ? kSyntheticDtSeconds
+        : trace.timestamps[i] - trace.timestamps[i - 1];
+      output[i] = filter.apply(trace.values[i], dt);
+      report.reportedDelayMillis += filter.getGroupDelayMillis();
+    }
+    report.reportedDelayMillis /= Math.max(length, 1);
+    if (length < 2) {
+      return report;
+    }
+
+    double meanDt =
+      (trace.timestamps[length - 1] - trace.timestamps[0]) / (length - 1);
+
+    // <> lag: shift the input later until it matches the output best
+    int maxShift = Math.min(length - 1, (int) (kMaxLagSeconds / meanDt));
+    double bestError = Double.POSITIVE_INFINITY;
+    int bestShift = 0;
+    for (int shift = 0; shift <= maxShift; shift++) {
+      double error = 0;
+      for (int i = shift; i < length; i++) {
+        double difference = output[i] - trace.values[i - shift];
+        error += difference * difference;
+      }
+      error /= length - shift;
+      if (error < bestError) {
+        bestError = error;
+        bestShift = shift;
+      }
+    }
+    report.measuredLagMillis = bestShift * meanDt * 1000;
+
+    // <> overshoot: output past anything the input did recently
+    int window = Math.max(1, (int) (kOvershootWindowSeconds / meanDt));
+    double squaredError = 0;
+    for (int i = 0; i < length; i++) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int j = Math.max(0, i - window); j <= i; j++) {
+        min = Math.min(min, trace.values[j]);
+        max = Math.max(max, trace.values[j]);
+      }
+      report.overshoot =
+        Math.max(report.overshoot, Math.max(output[i] - max, min - output[i]));
+
+      double difference = output[i] - trace.values[i];
+      squaredError += difference * difference;
+    }
+    report.rmsError = Math.sqrt(squaredError / length);
+
+    return report;
+  }
+
+  /**
+   * <> reads the stick channels out of a telemetry log
+   *
+   * @param log the .bin file
+   * @return one trace per stick channel the log has
+   * @throws IOException if the log can't be read
+   */
+  public static List<Trace> readTraces(Path log) throws IOException {
+    try (TelemetryLogReader reader = new TelemetryLogReader(log)) {
+      int[] indices = new int[kStickChannels.length];
+      for (int i = 0; i < kStickChannels.length; i++) {
+        indices[i] = reader.indexOf(kStickChannels[i]);
+      }
+
+      double[] record = new double[reader.getRecordWidth()];
+      double[] timestamps = new double[1024];
+      double[][] values = new double[kStickChannels.length][1024];
+      int length = 0;
+      while (reader.next(record)) {
+        if (length == timestamps.length) {
+          timestamps = Arrays.copyOf(timestamps, length * 2);
+          for (int i = 0; i < values.length; i++) {
+            values[i] = Arrays.copyOf(values[i], length * 2);
+          }
+        }
+        timestamps[length] = record[0];
+        for (int i = 0; i < indices.length; i++) {
+          values[i][length] = indices[i] == -1 ? 0 : record[indices[i]];
+        }
+        length++;
+      }
+
+      List<Trace> traces = new ArrayList<>();
+      for (int i = 0; i < indices.length; i++) {
+        if (indices[i] != -1) {
+          traces.add(
+            new Trace(
+              log.getFileName() + " " + kStickChannels[i],
+              Arrays.copyOf(timestamps, length),
+              Arrays.copyOf(values[i], length)
+            )
+          );
+        }
+      }
+      return traces;
+    }
+  }
+
+  /**
+   * <> a made up 20 second trace: full stick steps, a slow ramp, and a fast
+   * wiggle, at 50 Hz
+   */
+  public static Trace syntheticTrace() {
+    int length = (int) (20 / kSyntheticDtSeconds);
+    double[] timestamps = new double[length];
+    double[] values = new double[length];
+    for (int i = 0; i < length; i++) {
+      double t = i * kSyntheticDtSeconds;
+      timestamps[i] = t;
+      if (t < 5) {
+        values[i] = (int) t % 2 == 0 ? 0 : 1;
+      } else if (t < 10) {
+        values[i] = (t - 5) / 5;
+      } else if (t < 15) {
+        values[i] = 0.5 * Math.sin(2 * Math.PI * 2 * t);
+      } else {
+        values[i] = (int) (t * 2) % 2 == 0 ? -1 : 1;
+      }
+    }
+    return new Trace("synthetic", timestamps, values);
+  }
+
+  /** <> every argument is a telemetry log, no arguments uses a made up trace */
+  public static void main(String... args) throws IOException {
+    List<Trace> traces = new ArrayList<>();
+    if (args.length == 0) {
+      traces.add(syntheticTrace());
+    }
+    for (String arg : args) {
+      traces.addAll(readTraces(Paths.get(arg)));
+    }
+
+    System.out.printf(
+      "%-40s %-12s %10s %10s %10s %10s%n",
+      "trace",
+      "filter",
+      "delay ms",
+      "lag ms",
+      "overshoot",
+      "rms error"
+    );
+    for (Trace trace : traces) {
+      for (Map.Entry<String, Supplier<InputFilter>> filter : filters()
+        .entrySet()) {
+        Report report = measure(trace, filter.getValue().get());
+        System.out.printf(
+          "%-40s %-12s %10.1f %10.1f %10.3f %10.3f%n",
+          trace.name,
+          filter.getKey(),
+          report.reportedDelayMillis,
+          report.measuredLagMillis,
+          report.overshoot,
+          report.rmsError
+        );
+      }
+    }
+  }
+}
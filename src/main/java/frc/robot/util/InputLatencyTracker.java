@@ -0,0 +1,195 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.hal.DriverStationJNI;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.Profiling;
+
+/**
+ * <> follows driver input from the driver station to the motor controllers,
+ * so when the robot feels slow we can tell which part is slow. each teleop
+ * cycle gets stamped when:
+ *
+ * <ol>
+ *   <li>the driver station packet arrives (on a watcher thread)
+ *   <li>teleop reads the controller ({@link #markRead()})
+ *   <li>teleop is done shaping the sticks ({@link #markShaped()})
+ *   <li>the modules have sent their setReference calls
+ *       ({@link #markCommanded()})
+ * </ol>
+ *
+ * <p><> and the time between each pair goes into its own histogram:
+ * "scheduler" is how old the packet was when teleop got to it, "shaping" is
+ * the joystick math, "command" is kinematics plus the CAN writes. cycles
+ * where nothing gets written (every setpoint was suppressed) aren't counted
+ * past shaping
+ *
+ * <p><> the mark methods are for the main robot thread only
+ */
+public final class InputLatencyTracker {
+
+  private static InputLatencyTracker instance;
+
+  private static final String[] kStageNames = {
+    "scheduler",
+    "shaping",
+    "command",
+    "total",
+  };
+  private static final int kScheduler = 0;
+  private static final int kShaping = 1;
+  private static final int kCommand = 2;
+  private static final int kTotal = 3;
+
+  private final LoopHistogram[] m_histograms = new LoopHistogram[kStageNames.length];
+  private final String[][] m_keys = new String[kStageNames.length][];
+
+  // <> written by the watcher thread, 0 until the first packet
+  private volatile long m_arrivalNanos = 0;
+  private Thread m_watcher;
+
+  // <> the cycle in flight (main thread only)
+  private long m_cycleArrivalNanos = 0;
+  private long m_readNanos = 0;
+  private long m_shapedNanos = 0;
+  private boolean m_pending = false;
+
+  private long m_cycleCount = 0;
+
+  private InputLatencyTracker() {
+    for (int i = 0; i < kStageNames.length; i++) {
+      m_histograms[i] =
+        new LoopHistogram(
+          Profiling.kLatencyHistogramBinMicros,
+          Profiling.kLatencyHistogramBins
+        );
+      m_keys[i] =
+        new String[] {
+          "Latency/" + kStageNames[i] + "/p50 ms",
+          "Latency/" + kStageNames[i] + "/p99 ms",
+          "Latency/" + kStageNames[i] + "/max ms",
+        };
+    }
+  }
+
+  /** @return the one tracker */
+  public static synchronized InputLatencyTracker getInstance() {
+    if (instance == null) {
+      instance = new InputLatencyTracker();
+    }
+    return instance;
+  }
+
+  /**
+   * <> starts watching for driver station packets. without this (like in a
+   * log replay) only shaping and command get measured
+   */
+  public synchronized void start() {
+    if (m_watcher != null) {
+      return;
+    }
+    m_watcher = new Thread(this::watchDriverStation, "ds packet watcher");
+    m_watcher.setDaemon(true);
+    m_watcher.start();
+  }
+
+  // <> the HAL signals the event every time a packet comes in
+  private void watchDriverStation() {
+    int event = WPIUtilJNI.createEvent(false, false);
+    DriverStationJNI.provideNewDataEventHandle(event);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WPIUtilJNI.waitForObject(event);
+        m_arrivalNanos = System.nanoTime();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      DriverStationJNI.removeNewDataEventHandle(event);
+      WPIUtilJNI.destroyEvent(event);
+    }
+  }
+
+  /** <> call right before teleop reads the controller */
+  public void markRead() {
+    m_readNanos = System.nanoTime();
+    m_cycleArrivalNanos = m_arrivalNanos;
+    m_shapedNanos = 0;
+    m_pending = true;
+    if (m_cycleArrivalNanos != 0) {
+      m_histograms[kScheduler].record(m_readNanos - m_cycleArrivalNanos);
+    }
+  }
+
+  /** <> call once the sticks are shaped, right before driving */
+  public void markShaped() {
+    if (!m_pending) {
+      return;
+    }
+    m_shapedNanos = System.nanoTime();
+    m_histograms[kShaping].record(m_shapedNanos - m_readNanos);
+  }
+
+  /**
+   * <> call after a module sends its setpoints. only the first call after a
+   * read counts, so this is the time to the first module's setReference
+   */
+  public void markCommanded() {
+    if (!m_pending || m_shapedNanos == 0) {
+      return;
+    }
+    m_pending = false;
+    long now = System.nanoTime();
+    m_histograms[kCommand].record(now - m_shapedNanos);
+    if (m_cycleArrivalNanos != 0) {
+      m_histograms[kTotal].record(now - m_cycleArrivalNanos);
+    }
+  }
+
+  /** <> call once a loop, publishes every {@link Profiling#kPublishPeriodCycles} */
+  public void update() {
+    m_cycleCount++;
+    if (m_cycleCount % Profiling.kPublishPeriodCycles == 0) {
+      publish();
+    }
+  }
+
+  /** <> puts every stage's stats on the dashboard */
+  public void publish() {
+    for (int i = 0; i < kStageNames.length; i++) {
+      SmartDashboard.putNumber(
+        m_keys[i][0],
+        m_histograms[i].getPercentileMillis(0.5)
+      );
+      SmartDashboard.putNumber(
+        m_keys[i][1],
+        m_histograms[i].getPercentileMillis(0.99)
+      );
+      SmartDashboard.putNumber(m_keys[i][2], m_histograms[i].getMaxMillis());
+    }
+  }
+
+  /** @return driver station packet to teleop reading it */
+  public LoopHistogram getSchedulerHistogram() {
+    return m_histograms[kScheduler];
+  }
+
+  /** @return teleop reading the controller to done shaping */
+  public LoopHistogram getShapingHistogram() {
+    return m_histograms[kShaping];
+  }
+
+  /** @return done shaping to the first setReference */
+  public LoopHistogram getCommandHistogram() {
+    return m_histograms[kCommand];
+  }
+
+  /** @return driver station packet to the first setReference */
+  public LoopHistogram getTotalHistogram() {
+    return m_histograms[kTotal];
+  }
+}
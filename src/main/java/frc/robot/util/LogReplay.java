@@ -0,0 +1,317 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.robot.Constants;
+import frc.robot.Constants.Replay;
+import frc.robot.JoyUtil;
+import frc.robot.commands.SwerveTeleopCommand;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.GyroIOReplay;
+import frc.robot.subsystems.ModuleIOReplay;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <> re-runs a recorded telemetry log through the real drivetrain and teleop
+ * code with no hardware. every loop's recorded inputs (module encoders, gyro,
+ * joystick, FPGA time) are fed back in through the replay IO implementations
+ * and a simulated driver station, then the outputs the code logs (pose and
+ * teleop speeds) are compared against what was recorded. it runs as fast as
+ * the cpu allows
+ *
+ * <p><> the HAL and the telemetry/profiler singletons are global, so a
+ * process replays one log at a time, {@link LogReplayRunner} runs many logs
+ * in parallel processes
+ *
+ * <p><> things that aren't recorded (like an odometry reset from a button)
+ * show up as a divergence from that loop on
+ */
+public final class LogReplay {
+
+  // <> input channels, recorded by whatever reads the input
+  public static final String kGyroConnectedChannel = "input/gyro connected";
+  public static final String kGyroAngleChannel = "input/gyro angle";
+  public static final String kGyroRateChannel = "input/gyro rate";
+  public static final String kLeftTriggerChannel = "teleop/left trigger";
+  public static final String kRightTriggerChannel = "teleop/right trigger";
+  public static final String kPOVChannel = "teleop/pov";
+  public static final String kTeleopExecutionsChannel = "teleop/executions";
+  private static final String kLeftXChannel = "teleop/left x";
+  private static final String kLeftYChannel = "teleop/left y";
+  private static final String kRightXChannel = "teleop/right x";
+
+  // <> outputs compared against the recording
+  private static final String[] kOutputChannels = {
+    "drive/pose x",
+    "drive/pose y",
+    "drive/pose theta",
+    "teleop/x speed",
+    "teleop/y speed",
+    "teleop/rot",
+  };
+
+  private static final int kModules = 4;
+
+  public static String modulePositionChannel(int module) {
+    return "input/module " + module + " drive position";
+  }
+
+  public static String moduleVelocityChannel(int module) {
+    return "input/module " + module + " drive velocity";
+  }
+
+  public static String moduleTurningChannel(int module) {
+    return "input/module " + module + " turning position";
+  }
+
+  /** <> how a replay went */
+  public static final class Result {
+
+    public final Path log;
+    public long records = 0;
+    public double recordedSeconds = 0;
+    public double replayMillis = 0;
+    public final double[] maxErrors = new double[kOutputChannels.length];
+
+    // <> FPGA time of the first loop that didn't match, NaN if none
+    public double firstDivergence = Double.NaN;
+
+    private Result(Path log) {
+      this.log = log;
+    }
+
+    public boolean diverged() {
+      return !Double.isNaN(firstDivergence);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append(
+        String.format(
+          "%s: %d loops (%.1f s) replayed in %.0f ms (%.0fx real time)",
+          log.getFileName(),
+          records,
+          recordedSeconds,
+          replayMillis,
+          recordedSeconds * 1000 / Math.max(replayMillis, 1e-3)
+        )
+      );
+      builder.append(
+        diverged()
+          ? String.format(", DIVERGED at t=%.3f s", firstDivergence)
+          : ", matches"
+      );
+      for (int i = 0; i < kOutputChannels.length; i++) {
+        builder.append(
+          String.format("%n  max %s error: %.3g", kOutputChannels[i], maxErrors[i])
+        );
+      }
+      return builder.toString();
+    }
+  }
+
+  private LogReplay() {}
+
+  /**
+   * <> replays one log. the HAL has to be initialized (in simulation) first,
+   * and only one replay can run per process
+   *
+   * @param log the .bin file
+   * @return how it went
+   * @throws IOException if the log can't be read or is missing channels
+   */
+  public static Result replay(Path log) throws IOException {
+    Result result = new Result(log);
+
+    try (TelemetryLogReader reader = new TelemetryLogReader(log)) {
+      double[] record = new double[reader.getRecordWidth()];
+      if (!reader.next(record)) {
+        throw new IOException(log + " has no records");
+      }
+
+      int[][] moduleChannels = new int[kModules][];
+      for (int i = 0; i < kModules; i++) {
+        moduleChannels[i] =
+          new int[] {
+            require(reader, modulePositionChannel(i)),
+            require(reader, moduleVelocityChannel(i)),
+            require(reader, moduleTurningChannel(i)),
+          };
+      }
+      int gyroConnected = require(reader, kGyroConnectedChannel);
+      int gyroAngle = require(reader, kGyroAngleChannel);
+      int gyroRate = require(reader, kGyroRateChannel);
+      int leftX = require(reader, kLeftXChannel);
+      int leftY = require(reader, kLeftYChannel);
+      int rightX = require(reader, kRightXChannel);
+      int leftTrigger = require(reader, kLeftTriggerChannel);
+      int rightTrigger = require(reader, kRightTriggerChannel);
+      int pov = require(reader, kPOVChannel);
+      int teleopExecutions = require(reader, kTeleopExecutionsChannel);
+      int[] recordedOutputs = new int[kOutputChannels.length];
+      for (int i = 0; i < kOutputChannels.length; i++) {
+        recordedOutputs[i] = require(reader, kOutputChannels[i]);
+      }
+
+      // <> the clock only moves when a recorded loop says it does
+      SimHooks.pauseTiming();
+      advanceClockTo(record[0]);
+
+      // <> the drivetrain is built on the first loop's readings, like it
+      // <> was on the robot (the log starts right after robotInit)
+      ModuleIOReplay[] modules = new ModuleIOReplay[kModules];
+      for (int i = 0; i < kModules; i++) {
+        modules[i] = new ModuleIOReplay();
+      }
+      GyroIOReplay gyro = new GyroIOReplay();
+      fillDrivetrain(
+        record,
+        modules,
+        moduleChannels,
+        gyro,
+        gyroConnected,
+        gyroAngle,
+        gyroRate
+      );
+
+      DriveSubsystem drive = new DriveSubsystem(
+        modules[0],
+        modules[1],
+        modules[2],
+        modules[3],
+        gyro
+      );
+      JoyUtil controller = new JoyUtil(Constants.Joysticks.primaryControllerID);
+      XboxControllerSim controllerSim = new XboxControllerSim(controller);
+      SwerveTeleopCommand teleop = new SwerveTeleopCommand(drive, controller);
+
+      TelemetryLog telemetry = TelemetryLog.getInstance();
+      int[] replayedOutputs = new int[kOutputChannels.length];
+      for (int i = 0; i < kOutputChannels.length; i++) {
+        replayedOutputs[i] = telemetry.registerChannel(kOutputChannels[i]);
+      }
+
+      double firstTimestamp = record[0];
+      double lastExecutions = 0;
+      long start = System.nanoTime();
+      do {
+        advanceClockTo(record[0]);
+        fillDrivetrain(
+          record,
+          modules,
+          moduleChannels,
+          gyro,
+          gyroConnected,
+          gyroAngle,
+          gyroRate
+        );
+
+        controllerSim.setLeftX(record[leftX]);
+        controllerSim.setLeftY(record[leftY]);
+        controllerSim.setRightX(record[rightX]);
+        controllerSim.setLeftTriggerAxis(record[leftTrigger]);
+        controllerSim.setRightTriggerAxis(record[rightTrigger]);
+        controllerSim.setPOV((int) record[pov]);
+        controllerSim.notifyNewData();
+
+        // <> same order as the scheduler: subsystems, then commands
+        drive.periodic();
+        if (record[teleopExecutions] != lastExecutions) {
+          teleop.execute();
+          lastExecutions = record[teleopExecutions];
+        }
+
+        for (int i = 0; i < kOutputChannels.length; i++) {
+          double error = Math.abs(
+            telemetry.get(replayedOutputs[i]) - record[recordedOutputs[i]]
+          );
+          result.maxErrors[i] = Math.max(result.maxErrors[i], error);
+          if (error > Replay.kTolerance && !result.diverged()) {
+            result.firstDivergence = record[0];
+          }
+        }
+
+        result.records++;
+        result.recordedSeconds = record[0] - firstTimestamp;
+      } while (reader.next(record));
+      result.replayMillis = (System.nanoTime() - start) / 1e6;
+    }
+
+    return result;
+  }
+
+  private static void fillDrivetrain(
+    double[] record,
+    ModuleIOReplay[] modules,
+    int[][] moduleChannels,
+    GyroIOReplay gyro,
+    int gyroConnected,
+    int gyroAngle,
+    int gyroRate
+  ) {
+    for (int i = 0; i < modules.length; i++) {
+      modules[i].inputs.drivePositionMeters = record[moduleChannels[i][0]];
+      modules[i].inputs.driveVelocityMetersPerSecond =
+        record[moduleChannels[i][1]];
+      modules[i].inputs.turningPositionRadians = record[moduleChannels[i][2]];
+    }
+    gyro.inputs.connected = record[gyroConnected] != 0;
+    gyro.inputs.angleDegrees = record[gyroAngle];
+    gyro.inputs.rateDegreesPerSecond = record[gyroRate];
+  }
+
+  private static void advanceClockTo(double timestamp) {
+    double delta = timestamp - Timer.getFPGATimestamp();
+    if (delta > 0) {
+      SimHooks.stepTiming(delta);
+    }
+  }
+
+  private static int require(TelemetryLogReader reader, String channel)
+    throws IOException {
+    int index = reader.indexOf(channel);
+    if (index == -1) {
+      throw new IOException(
+        "log has no \"" + channel + "\" channel (recorded before replay support?)"
+      );
+    }
+    return index;
+  }
+
+  /**
+   * <> replays the one log given as the only argument and prints the result.
+   * exits with 0 if it matched, 1 if it diverged, 2 if it couldn't be replayed
+   */
+  public static void main(String... args) {
+    if (args.length != 1) {
+      System.err.println("usage: LogReplay <telemetry log .bin>");
+      System.exit(2);
+    }
+
+    if (!HAL.initialize(500, 0)) {
+      System.err.println("couldn't initialize the HAL");
+      System.exit(2);
+    }
+
+    int status;
+    try {
+      Result result = replay(Paths.get(args[0]));
+      System.out.println(result);
+      status = result.diverged() ? 1 : 0;
+    } catch (IOException e) {
+      System.out.println(args[0] + ": couldn't replay, " + e.getMessage());
+      status = 2;
+    }
+    // <> the HAL leaves threads running
+    System.exit(status);
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <> replays a pile of telemetry logs, one {@link LogReplay} process per log
+ * and as many processes at once as there are cores. run on a dev machine
+ * with "./gradlew replayLogs -Plogs=some/dir,another.bin"
+ */
+public final class LogReplayRunner {
+
+  private LogReplayRunner() {}
+
+  // <> what one child process printed, and how it exited
+  private static final class Outcome {
+
+    private final String m_output;
+    private final int m_status;
+
+    private Outcome(String output, int status) {
+      m_output = output;
+      m_status = status;
+    }
+  }
+
+  /**
+   * <> every argument is a log or a directory of logs. exits with 0 if every
+   * log matched its recording
+   */
+  public static void main(String... args)
+    throws IOException, InterruptedException {
+    List<Path> logs = new ArrayList<>();
+    for (String arg : args) {
+      Path path = Paths.get(arg);
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> files = Files.list(path)) {
+          logs.addAll(
+            files
+              .filter(file -> file.toString().endsWith(".bin"))
+              .sorted()
+              .collect(Collectors.toList())
+          );
+        }
+      } else {
+        logs.add(path);
+      }
+    }
+    if (logs.isEmpty()) {
+      System.err.println("usage: LogReplayRunner <log or directory>...");
+      System.exit(2);
+    }
+
+    int threads = Math.min(
+      logs.size(),
+      Runtime.getRuntime().availableProcessors()
+    );
+    System.out.printf("replaying %d logs, %d at a time%n", logs.size(), threads);
+
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Outcome>> outcomes = new ArrayList<>();
+    for (Path log : logs) {
+      outcomes.add(pool.submit(() -> replayInChild(log)));
+    }
+    pool.shutdown();
+
+    int matched = 0;
+    int diverged = 0;
+    int failed = 0;
+    for (Future<Outcome> future : outcomes) {
+      Outcome outcome;
+      try {
+        outcome = future.get();
+      } catch (ExecutionException e) {
+        outcome = new Outcome("couldn't start replay: " + e.getCause(), 2);
+      }
+      System.out.println(outcome.m_output.trim());
+      if (outcome.m_status == 0) {
+        matched++;
+      } else if (outcome.m_status == 1) {
+        diverged++;
+      } else {
+        failed++;
+      }
+    }
+
+    System.out.printf(
+      "%d matched, %d diverged, %d failed in %.1f s%n",
+      matched,
+      diverged,
+      failed,
+      (System.nanoTime() - start) / 1e9
+    );
+    System.exit(diverged + failed == 0 ? 0 : 1);
+  }
+
+  // <> same jvm, classpath and native libraries as this one
+  private static Outcome replayInChild(Path log)
+    throws IOException, InterruptedException {
+    String java = Paths
+      .get(System.getProperty("java.home"), "bin", "java")
+      .toString();
+    List<String> command = new ArrayList<>();
+    command.add(java);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    String libraryPath = System.getProperty("java.library.path");
+    if (libraryPath != null) {
+      command.add("-Djava.library.path=" + libraryPath);
+    }
+    command.add(LogReplay.class.getName());
+    command.add(log.toAbsolutePath().toString());
+
+    Process process = new ProcessBuilder(command)
+      .redirectErrorStream(true)
+      .directory(new File(System.getProperty("user.dir")))
+      .start();
+    String output;
+    try (InputStream input = process.getInputStream()) {
+      output = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    return new Outcome(output, process.waitFor());
+  }
+}
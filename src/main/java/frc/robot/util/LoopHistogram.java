@@ -0,0 +1,99 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * <> fixed memory histogram of durations. every sample lands in an evenly
+ * sized bin, so recording is just an array increment and percentiles are
+ * accurate to one bin width. anything past the last bin goes in an overflow
+ * bin (the max is still tracked exactly)
+ */
+public class LoopHistogram {
+
+  private final long m_binWidthNanos;
+  private final long[] m_bins;
+
+  private long m_count = 0;
+  private long m_maxNanos = 0;
+  private long m_totalNanos = 0;
+
+  /**
+   * <> construct an empty histogram
+   *
+   * @param binWidthMicros width of each bin
+   * @param binCount       how many bins (the range is binWidth * binCount)
+   */
+  public LoopHistogram(double binWidthMicros, int binCount) {
+    m_binWidthNanos = (long) (binWidthMicros * 1000);
+    // <> one extra bin for overflow
+    m_bins = new long[binCount + 1];
+  }
+
+  /**
+   * <> record one sample
+   *
+   * @param nanos duration in nanoseconds
+   */
+  public void record(long nanos) {
+    int bin = (int) Math.min(nanos / m_binWidthNanos, m_bins.length - 1);
+    if (bin < 0) {
+      bin = 0;
+    }
+    m_bins[bin]++;
+    m_count++;
+    m_totalNanos += nanos;
+    if (nanos > m_maxNanos) {
+      m_maxNanos = nanos;
+    }
+  }
+
+  /**
+   * <> the value below which a fraction of the samples fall
+   *
+   * @param fraction between 0 and 1 (0.99 for p99)
+   * @return upper edge of the bin holding that sample, in milliseconds
+   */
+  public double getPercentileMillis(double fraction) {
+    if (m_count == 0) {
+      return 0;
+    }
+
+    long target = (long) Math.ceil(fraction * m_count);
+    long seen = 0;
+    for (int i = 0; i < m_bins.length - 1; i++) {
+      seen += m_bins[i];
+      if (seen >= target) {
+        return (i + 1) * m_binWidthNanos / 1e6;
+      }
+    }
+    // <> it's in the overflow bin, so the max is the best we know
+    return getMaxMillis();
+  }
+
+  /** @return the longest sample in milliseconds */
+  public double getMaxMillis() {
+    return m_maxNanos / 1e6;
+  }
+
+  /** @return the average sample in milliseconds */
+  public double getMeanMillis() {
+    return m_count == 0 ? 0 : m_totalNanos / 1e6 / m_count;
+  }
+
+  /** @return how many samples have been recorded */
+  public long getCount() {
+    return m_count;
+  }
+
+  /** <> forget every sample */
+  public void reset() {
+    for (int i = 0; i < m_bins.length; i++) {
+      m_bins[i] = 0;
+    }
+    m_count = 0;
+    m_maxNanos = 0;
+    m_totalNanos = 0;
+  }
+}
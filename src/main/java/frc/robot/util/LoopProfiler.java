@@ -0,0 +1,383 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.Profiling;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * <> times named sections of the robot loop (subsystem periodics, command
+ * executes) so that when the loop overruns we know who to blame
+ *
+ * <p><> sections are registered once and get an integer handle, and every
+ * section keeps a fixed size histogram, so timing a section every loop doesn't
+ * allocate. whenever a whole cycle goes over the loop period, the section that
+ * took the longest in that cycle gets charged with the overrun. summaries go
+ * to the dashboard every {@link Profiling#kPublishPeriodCycles} cycles
+ *
+ * <p><> every section also counts the bytes it allocates (from the jvm's
+ * per thread allocation counter), and every garbage collection (see
+ * {@link GCPauseMonitor}) is charged to the section that allocated the most
+ * since the last one. a collection that happened during an overrun cycle
+ * counts as having caused that overrun. the allocation numbers go to the
+ * dashboard as one row per section under "Alloc/"
+ *
+ * <p><> everything here is meant to be called from the main robot thread
+ */
+public final class LoopProfiler {
+
+  private static LoopProfiler instance;
+
+  // <> overruns that no section accounts for (scheduler overhead, button
+  // <> polling, untimed subsystems) get charged to this
+  private static final String kUntrackedName = "untracked";
+
+  private final String[] m_names = new String[Profiling.kMaxSections];
+  private final LoopHistogram[] m_histograms = new LoopHistogram[Profiling.kMaxSections];
+  private final long[] m_startNanos = new long[Profiling.kMaxSections];
+  private final long[] m_cycleNanos = new long[Profiling.kMaxSections];
+  private final long[] m_overruns = new long[Profiling.kMaxSections];
+
+  // <> allocation per section: bytes at start(), total, most in one call,
+  // <> since the last collection, and collections charged to it
+  private final ThreadMXBean m_threads;
+  private final long[] m_startBytes = new long[Profiling.kMaxSections];
+  private final long[] m_totalBytes = new long[Profiling.kMaxSections];
+  private final long[] m_maxBytes = new long[Profiling.kMaxSections];
+  private final long[] m_bytesSinceGC = new long[Profiling.kMaxSections];
+  private final long[] m_collections = new long[Profiling.kMaxSections];
+  private long m_cycleStartBytes = 0;
+  private long m_cycleTotalBytes = 0;
+
+  // <> the allocation table, one entry per section
+  private final double[] m_meanBytesRow = new double[Profiling.kMaxSections];
+  private final double[] m_maxBytesRow = new double[Profiling.kMaxSections];
+  private final double[] m_collectionsRow = new double[Profiling.kMaxSections];
+  private boolean m_namesPublished = false;
+
+  // <> collections, and the last few overrun cycles to match them against,
+  // <> as [start, end] in ms since the jvm started
+  private final GCPauseMonitor m_gcMonitor = new GCPauseMonitor(
+    Profiling.kGCQueueCapacity
+  );
+  private final double[] m_pause = new double[2];
+  private final double[] m_overrunWindows = new double[Profiling.kOverrunHistory * 2];
+  private long m_overrunWindowCount = 0;
+  private final LoopHistogram m_pauseHistogram = new LoopHistogram(
+    Profiling.kHistogramBinMicros,
+    Profiling.kHistogramBins
+  );
+  private long m_gcOverruns = 0;
+  private String m_lastGCCulprit = "none";
+
+  // <> dashboard keys are built when a section is registered, not every publish
+  private final String[][] m_keys = new String[Profiling.kMaxSections][];
+  private int m_sectionCount = 0;
+
+  private final LoopHistogram m_cycleHistogram = new LoopHistogram(
+    Profiling.kHistogramBinMicros,
+    Profiling.kHistogramBins
+  );
+  private long m_cycleStartNanos = 0;
+  private long m_lastCycleNanos = 0;
+  private long m_cycleCount = 0;
+  private long m_totalOverruns = 0;
+  private long m_untrackedOverruns = 0;
+  private String m_lastCulprit = "none";
+
+  private LoopProfiler() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (
+      Profiling.kTrackAllocations &&
+      threads instanceof ThreadMXBean &&
+      ((ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+    ) {
+      m_threads = (ThreadMXBean) threads;
+      m_threads.setThreadAllocatedMemoryEnabled(true);
+      m_gcMonitor.start();
+    } else {
+      m_threads = null;
+    }
+  }
+
+  /** @return the one profiler */
+  public static synchronized LoopProfiler getInstance() {
+    if (instance == null) {
+      instance = new LoopProfiler();
+    }
+    return instance;
+  }
+
+  /**
+   * <> registers a section to time. registering the same name twice returns
+   * the same handle, so commands that get constructed more than once share
+   * their stats
+   *
+   * @param name what the section shows up as on the dashboard
+   * @return handle to pass to {@link #start(int)} and {@link #stop(int)}
+   */
+  public synchronized int register(String name) {
+    for (int i = 0; i < m_sectionCount; i++) {
+      if (m_names[i].equals(name)) {
+        return i;
+      }
+    }
+    if (m_sectionCount == Profiling.kMaxSections) {
+      throw new IllegalStateException(
+        "too many profiler sections, raise Profiling.kMaxSections"
+      );
+    }
+
+    int handle = m_sectionCount++;
+    m_names[handle] = name;
+    m_namesPublished = false;
+    m_histograms[handle] =
+      new LoopHistogram(Profiling.kHistogramBinMicros, Profiling.kHistogramBins);
+    m_keys[handle] =
+      new String[] {
+        "Loop/" + name + "/p50 ms",
+        "Loop/" + name + "/p99 ms",
+        "Loop/" + name + "/max ms",
+        "Loop/" + name + "/overruns",
+      };
+    return handle;
+  }
+
+  /**
+   * <> marks the start of a section
+   *
+   * @param section handle from {@link #register(String)}
+   */
+  public void start(int section) {
+    m_startBytes[section] = allocatedBytes();
+    m_startNanos[section] = System.nanoTime();
+  }
+
+  /**
+   * <> marks the end of a section and records how long it took
+   *
+   * @param section handle from {@link #register(String)}
+   */
+  public void stop(int section) {
+    long duration = System.nanoTime() - m_startNanos[section];
+    m_cycleNanos[section] += duration;
+    m_histograms[section].record(duration);
+
+    long bytes = allocatedBytes() - m_startBytes[section];
+    m_totalBytes[section] += bytes;
+    m_bytesSinceGC[section] += bytes;
+    if (bytes > m_maxBytes[section]) {
+      m_maxBytes[section] = bytes;
+    }
+  }
+
+  // <> bytes this thread has allocated since it started, 0 if that can't be
+  // <> tracked (reading it doesn't allocate)
+  private long allocatedBytes() {
+    return m_threads == null ? 0 : m_threads.getCurrentThreadAllocatedBytes();
+  }
+
+  /** <> call right before the scheduler runs */
+  public void beginCycle() {
+    for (int i = 0; i < m_sectionCount; i++) {
+      m_cycleNanos[i] = 0;
+    }
+    m_cycleStartBytes = allocatedBytes();
+    m_cycleStartNanos = System.nanoTime();
+  }
+
+  /** <> call right after the scheduler runs */
+  public void endCycle() {
+    long end = System.nanoTime();
+    long total = end - m_cycleStartNanos;
+    m_lastCycleNanos = total;
+    m_cycleHistogram.record(total);
+    m_cycleTotalBytes += allocatedBytes() - m_cycleStartBytes;
+
+    if (total > Profiling.kLoopPeriodSeconds * 1e9) {
+      attributeOverrun(total);
+      int window = (int) (m_overrunWindowCount++ % Profiling.kOverrunHistory) * 2;
+      m_overrunWindows[window] = m_gcMonitor.uptimeMillis(m_cycleStartNanos);
+      m_overrunWindows[window + 1] = m_gcMonitor.uptimeMillis(end);
+    }
+
+    // <> collections show up a little after they happen, so they're matched
+    // <> against the last few overruns rather than just this cycle
+    while (m_gcMonitor.poll(m_pause)) {
+      attributeCollection(m_pause[0], m_pause[1]);
+    }
+
+    m_cycleCount++;
+    if (m_cycleCount % Profiling.kPublishPeriodCycles == 0) {
+      publish();
+    }
+  }
+
+  // <> charge the overrun to whoever used the most time this cycle
+  private void attributeOverrun(long totalNanos) {
+    m_totalOverruns++;
+
+    int culprit = -1;
+    long tracked = 0;
+    for (int i = 0; i < m_sectionCount; i++) {
+      tracked += m_cycleNanos[i];
+      if (culprit == -1 || m_cycleNanos[i] > m_cycleNanos[culprit]) {
+        culprit = i;
+      }
+    }
+
+    if (culprit == -1 || totalNanos - tracked > m_cycleNanos[culprit]) {
+      m_untrackedOverruns++;
+      m_lastCulprit = kUntrackedName;
+    } else {
+      m_overruns[culprit]++;
+      m_lastCulprit = m_names[culprit];
+    }
+  }
+
+  // <> charge a collection to whoever made the most garbage since the last
+  // <> one, and to an overrun if it happened during one
+  private void attributeCollection(double startMillis, double durationMillis) {
+    m_pauseHistogram.record((long) (durationMillis * 1e6));
+
+    int culprit = -1;
+    for (int i = 0; i < m_sectionCount; i++) {
+      if (culprit == -1 || m_bytesSinceGC[i] > m_bytesSinceGC[culprit]) {
+        culprit = i;
+      }
+    }
+    if (culprit != -1) {
+      m_collections[culprit]++;
+      m_lastGCCulprit = m_names[culprit];
+    }
+    for (int i = 0; i < m_sectionCount; i++) {
+      m_bytesSinceGC[i] = 0;
+    }
+
+    long windows = Math.min(m_overrunWindowCount, Profiling.kOverrunHistory);
+    for (int i = 0; i < windows; i++) {
+      double windowStart = m_overrunWindows[i * 2];
+      double windowEnd = m_overrunWindows[i * 2 + 1];
+      if (startMillis <= windowEnd && startMillis + durationMillis >= windowStart) {
+        m_gcOverruns++;
+        // <> one collection only causes one overrun
+        m_overrunWindows[i * 2 + 1] = Double.NEGATIVE_INFINITY;
+        break;
+      }
+    }
+  }
+
+  /** <> puts every section's stats on the dashboard */
+  public void publish() {
+    SmartDashboard.putNumber(
+      "Loop/cycle/p50 ms",
+      m_cycleHistogram.getPercentileMillis(0.5)
+    );
+    SmartDashboard.putNumber(
+      "Loop/cycle/p99 ms",
+      m_cycleHistogram.getPercentileMillis(0.99)
+    );
+    SmartDashboard.putNumber(
+      "Loop/cycle/max ms",
+      m_cycleHistogram.getMaxMillis()
+    );
+    SmartDashboard.putNumber("Loop/cycle/overruns", m_totalOverruns);
+    SmartDashboard.putNumber("Loop/untracked/overruns", m_untrackedOverruns);
+    SmartDashboard.putString("Loop/last overrun culprit", m_lastCulprit);
+
+    for (int i = 0; i < m_sectionCount; i++) {
+      SmartDashboard.putNumber(
+        m_keys[i][0],
+        m_histograms[i].getPercentileMillis(0.5)
+      );
+      SmartDashboard.putNumber(
+        m_keys[i][1],
+        m_histograms[i].getPercentileMillis(0.99)
+      );
+      SmartDashboard.putNumber(m_keys[i][2], m_histograms[i].getMaxMillis());
+      SmartDashboard.putNumber(m_keys[i][3], m_overruns[i]);
+    }
+
+    publishAllocation();
+  }
+
+  // <> one row per section, in the same order as Alloc/sections
+  private void publishAllocation() {
+    if (m_threads == null) {
+      return;
+    }
+    if (!m_namesPublished) {
+      SmartDashboard.putStringArray(
+        "Alloc/sections",
+        Arrays.copyOf(m_names, m_sectionCount)
+      );
+      m_namesPublished = true;
+    }
+    for (int i = 0; i < m_sectionCount; i++) {
+      long calls = m_histograms[i].getCount();
+      m_meanBytesRow[i] = calls == 0 ? 0 : (double) m_totalBytes[i] / calls;
+      m_maxBytesRow[i] = m_maxBytes[i];
+      m_collectionsRow[i] = m_collections[i];
+    }
+    // <> the arrays are copied by networktables, so only the used part is sent
+    SmartDashboard.putNumberArray(
+      "Alloc/mean bytes",
+      Arrays.copyOf(m_meanBytesRow, m_sectionCount)
+    );
+    SmartDashboard.putNumberArray(
+      "Alloc/max bytes",
+      Arrays.copyOf(m_maxBytesRow, m_sectionCount)
+    );
+    SmartDashboard.putNumberArray(
+      "Alloc/collections caused",
+      Arrays.copyOf(m_collectionsRow, m_sectionCount)
+    );
+    SmartDashboard.putNumber(
+      "Alloc/cycle mean bytes",
+      m_cycleCount == 0 ? 0 : (double) m_cycleTotalBytes / m_cycleCount
+    );
+
+    SmartDashboard.putNumber("GC/collections", m_pauseHistogram.getCount());
+    SmartDashboard.putNumber("GC/max ms", m_pauseHistogram.getMaxMillis());
+    SmartDashboard.putNumber("GC/overruns caused", m_gcOverruns);
+    SmartDashboard.putString("GC/last culprit", m_lastGCCulprit);
+    SmartDashboard.putNumber("GC/dropped", m_gcMonitor.getDroppedPauses());
+  }
+
+  /** @return how long the last scheduler cycle took in milliseconds */
+  public double getLastCycleMillis() {
+    return m_lastCycleNanos / 1e6;
+  }
+
+  /** @return histogram of whole scheduler cycles */
+  public LoopHistogram getCycleHistogram() {
+    return m_cycleHistogram;
+  }
+
+  /**
+   * @param section handle from {@link #register(String)}
+   * @return average bytes allocated per call, 0 if allocation isn't tracked
+   */
+  public double getMeanBytes(int section) {
+    long calls = m_histograms[section].getCount();
+    return calls == 0 ? 0 : (double) m_totalBytes[section] / calls;
+  }
+
+  /** @return histogram of garbage collection durations */
+  public LoopHistogram getPauseHistogram() {
+    return m_pauseHistogram;
+  }
+
+  /**
+   * @param section handle from {@link #register(String)}
+   * @return histogram of that section
+   */
+  public LoopHistogram getHistogram(int section) {
+    return m_histograms[section];
+  }
+}
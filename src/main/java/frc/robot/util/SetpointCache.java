@@ -0,0 +1,101 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <> remembers the last setpoint sent to a motor controller so the same value
+ * isn't sent over CAN every loop. a new frame only goes out when the value
+ * moves by more than the epsilon, the control mode changes, or the keep alive
+ * interval runs out (so a dropped frame can't leave a motor on a stale
+ * setpoint for long)
+ *
+ * <p><> counts of sent and suppressed frames are kept per cache and for every
+ * cache combined. the caches can be used from the drivetrain control loop's
+ * thread while the main loop reads the counts, so the combined counts are
+ * LongAdders and each cache's own counts (only ever changed by the one
+ * thread using that cache) are volatile so a read can't tear
+ */
+public class SetpointCache {
+
+  private static final LongAdder totalSent = new LongAdder();
+  private static final LongAdder totalSuppressed = new LongAdder();
+
+  private final double m_epsilon;
+  private final double m_keepAliveSeconds;
+
+  private double m_lastValue = Double.NaN;
+  private Object m_lastMode = null;
+  private double m_lastSentTime = Double.NEGATIVE_INFINITY;
+
+  private volatile long m_sent = 0;
+  private volatile long m_suppressed = 0;
+
+  /**
+   * <> construct an empty cache (the first setpoint always gets sent)
+   *
+   * @param epsilon          smallest change in value worth sending
+   * @param keepAliveSeconds longest time to go without resending
+   */
+  public SetpointCache(double epsilon, double keepAliveSeconds) {
+    m_epsilon = epsilon;
+    m_keepAliveSeconds = keepAliveSeconds;
+  }
+
+  /**
+   * <> decides if a setpoint needs to go out, and if so remembers it as sent
+   *
+   * @param value            the setpoint
+   * @param mode             control mode (e.g. ControlType.kVelocity)
+   * @param timestampSeconds current time
+   * @return true if the caller should send the setpoint
+   */
+  public boolean shouldSend(double value, Object mode, double timestampSeconds) {
+    if (
+      mode == m_lastMode &&
+      Math.abs(value - m_lastValue) <= m_epsilon &&
+      timestampSeconds - m_lastSentTime < m_keepAliveSeconds
+    ) {
+      m_suppressed++;
+      totalSuppressed.increment();
+      return false;
+    }
+
+    m_lastValue = value;
+    m_lastMode = mode;
+    m_lastSentTime = timestampSeconds;
+    m_sent++;
+    totalSent.increment();
+    return true;
+  }
+
+  /** <> forget the last setpoint so the next one is always sent */
+  public void invalidate() {
+    m_lastValue = Double.NaN;
+    m_lastMode = null;
+    m_lastSentTime = Double.NEGATIVE_INFINITY;
+  }
+
+  /** @return frames this cache let through */
+  public long getSent() {
+    return m_sent;
+  }
+
+  /** @return frames this cache suppressed */
+  public long getSuppressed() {
+    return m_suppressed;
+  }
+
+  /** @return frames let through by every cache */
+  public static long getTotalSent() {
+    return totalSent.sum();
+  }
+
+  /** @return frames suppressed by every cache */
+  public static long getTotalSuppressed() {
+    return totalSuppressed.sum();
+  }
+}
@@ -0,0 +1,55 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * <> runs an axis through a fixed list of {@link ShapingStage}s in order.
+ * build one per axis at startup, nothing is allocated per call
+ */
+public class ShapingPipeline {
+
+  // <> the time since the last call used on the first call (or after a reset)
+  private static final double kNominalDtSeconds = 0.02;
+
+  private final ShapingStage[] m_stages;
+  private double m_lastTimestamp = Double.NaN;
+
+  /**
+   * <> construct a pipeline
+   *
+   * @param stages applied first to last
+   */
+  public ShapingPipeline(ShapingStage... stages) {
+    m_stages = stages.clone();
+  }
+
+  /**
+   * <> shapes one reading
+   *
+   * @param input            raw axis position
+   * @param timestampSeconds current time, used for the stages' dt
+   * @return the shaped value
+   */
+  public double apply(double input, double timestampSeconds) {
+    double dt = Double.isNaN(m_lastTimestamp)
+      ? kNominalDtSeconds
+      : timestampSeconds - m_lastTimestamp;
+    m_lastTimestamp = timestampSeconds;
+
+    double value = input;
+    for (ShapingStage stage : m_stages) {
+      value = stage.apply(value, dt);
+    }
+    return value;
+  }
+
+  /** <> resets every stage */
+  public void reset() {
+    m_lastTimestamp = Double.NaN;
+    for (ShapingStage stage : m_stages) {
+      stage.reset();
+    }
+  }
+}
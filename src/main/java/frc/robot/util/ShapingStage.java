@@ -0,0 +1,23 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * <> one step of a {@link ShapingPipeline}. a stage can keep state between
+ * calls (filters, rate limits), so every axis gets its own stages
+ */
+public interface ShapingStage {
+  /**
+   * <> shapes one reading
+   *
+   * @param input     output of the previous stage
+   * @param dtSeconds time since the last call
+   * @return input for the next stage
+   */
+  double apply(double input, double dtSeconds);
+
+  /** <> forgets any state, e.g. when the robot is enabled */
+  default void reset() {}
+}
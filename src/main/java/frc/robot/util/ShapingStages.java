@@ -0,0 +1,224 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+/** <> the {@link ShapingStage}s joystick pipelines are built from */
+public final class ShapingStages {
+
+  private ShapingStages() {}
+
+  /** <> zero inside the deadband, rescaled to still reach 1 outside of it */
+  public static class Deadband implements ShapingStage {
+
+    private final double m_deadband;
+
+    public Deadband(double deadband) {
+      m_deadband = deadband;
+    }
+
+    @Override
+    public double apply(double input, double dtSeconds) {
+      return MathUtil.applyDeadband(input, m_deadband);
+    }
+  }
+
+  // <> what the filters report their delay at before they've seen a dt
+  private static final double kNominalDtSeconds = 0.02;
+
+  /**
+   * <> single pole low pass filter, strength is how much of the previous
+   * output is kept each call (0 does nothing, closer to 1 is smoother)
+   */
+  public static class LowPass implements InputFilter {
+
+    private final double m_strength;
+    private double m_previous = 0;
+    private double m_lastDt = kNominalDtSeconds;
+
+    public LowPass(double strength) {
+      m_strength = strength;
+    }
+
+    @Override
+    public double apply(double input, double dtSeconds) {
+      m_lastDt = dtSeconds;
+      m_previous = m_strength * m_previous + (1 - m_strength) * input;
+      return m_previous;
+    }
+
+    // <> strength / (1 - strength) calls, so it depends on the loop rate
+    @Override
+    public double getGroupDelayMillis() {
+      return m_strength / (1 - m_strength) * m_lastDt * 1000;
+    }
+
+    @Override
+    public void reset() {
+      m_previous = 0;
+    }
+  }
+
+  /**
+   * <> any curve on [-1, 1], sampled into a table once so applying it is an
+   * index and a lerp instead of whatever the curve costs (Math.pow, etc).
+   * inputs outside [-1, 1] are clamped
+   */
+  public static class Curve implements ShapingStage {
+
+    private final double[] m_table;
+    private final double m_scale;
+
+    /**
+     * @param curve   the curve
+     * @param entries how many points to sample it at, at least 2
+     */
+    public Curve(DoubleUnaryOperator curve, int entries) {
+      if (entries < 2) {
+        throw new IllegalArgumentException("a curve needs at least 2 entries");
+      }
+      m_table = new double[entries];
+      m_scale = (entries - 1) / 2.0;
+      for (int i = 0; i < entries; i++) {
+        m_table[i] = curve.applyAsDouble(i / m_scale - 1);
+      }
+    }
+
+    @Override
+    public double apply(double input, double dtSeconds) {
+      double position = (MathUtil.clamp(input, -1, 1) + 1) * m_scale;
+      int index = Math.min((int) position, m_table.length - 2);
+      double fraction = position - index;
+      return m_table[index] + (m_table[index + 1] - m_table[index]) * fraction;
+    }
+  }
+
+  /**
+   * <> limits how fast the value can change, in units per second. anything
+   * slower than the limit isn't delayed at all, a full stick step is
+   * delayed the most
+   */
+  public static class RateLimit implements InputFilter {
+
+    private final double m_ratePerSecond;
+    private double m_previous = 0;
+
+    public RateLimit(double ratePerSecond) {
+      m_ratePerSecond = ratePerSecond;
+    }
+
+    @Override
+    public double apply(double input, double dtSeconds) {
+      double maxStep = m_ratePerSecond * dtSeconds;
+      m_previous += MathUtil.clamp(input - m_previous, -maxStep, maxStep);
+      return m_previous;
+    }
+
+    @Override
+    public void reset() {
+      m_previous = 0;
+    }
+
+    // <> a step from 0 to full stick comes out as a ramp, which is centered
+    // <> half the ramp's length behind the step
+    @Override
+    public double getGroupDelayMillis() {
+      return 1000 / (2 * m_ratePerSecond);
+    }
+  }
+
+  /**
+   * <> the one euro filter (Casiez et al. 2012): a single pole low pass
+   * whose cutoff goes up with how fast the input is moving, so a stick held
+   * still is smoothed a lot and a stick being slammed barely lags
+   */
+  public static class OneEuro implements InputFilter {
+
+    private final double m_minCutoffHz;
+    private final double m_beta;
+    private final double m_derivativeCutoffHz;
+
+    private boolean m_primed = false;
+    private double m_previous = 0;
+    private double m_previousDerivative = 0;
+    private double m_cutoffHz;
+
+    /**
+     * @param minCutoffHz        cutoff when the stick isn't moving, lower is
+     *                           smoother
+     * @param beta               how much the cutoff goes up per unit per
+     *                           second of stick speed, higher lags less
+     * @param derivativeCutoffHz cutoff for the stick speed estimate
+     */
+    public OneEuro(double minCutoffHz, double beta, double derivativeCutoffHz) {
+      m_minCutoffHz = minCutoffHz;
+      m_beta = beta;
+      m_derivativeCutoffHz = derivativeCutoffHz;
+      m_cutoffHz = minCutoffHz;
+    }
+
+    private static double alpha(double cutoffHz, double dtSeconds) {
+      double tau = 1 / (2 * Math.PI * cutoffHz);
+      return 1 / (1 + tau / dtSeconds);
+    }
+
+    @Override
+    public double apply(double input, double dtSeconds) {
+      if (!m_primed || dtSeconds <= 0) {
+        m_primed = true;
+        m_previous = input;
+        return input;
+      }
+
+      double derivative = (input - m_previous) / dtSeconds;
+      m_previousDerivative +=
+        alpha(m_derivativeCutoffHz, dtSeconds) *
+        (derivative - m_previousDerivative);
+
+      m_cutoffHz = m_minCutoffHz + m_beta * Math.abs(m_previousDerivative);
+      m_previous += alpha(m_cutoffHz, dtSeconds) * (input - m_previous);
+      return m_previous;
+    }
+
+    @Override
+    public void reset() {
+      m_primed = false;
+      m_previous = 0;
+      m_previousDerivative = 0;
+      m_cutoffHz = m_minCutoffHz;
+    }
+
+    // <> the time constant at the current cutoff
+    @Override
+    public double getGroupDelayMillis() {
+      return 1000 / (2 * Math.PI * m_cutoffHz);
+    }
+  }
+
+  /**
+   * <> multiplies by a constant or by something read every call (like fast
+   * mode's trigger)
+   */
+  public static class Scale implements ShapingStage {
+
+    private final DoubleSupplier m_multiplier;
+
+    public Scale(double multiplier) {
+      this(() -> multiplier);
+    }
+
+    public Scale(DoubleSupplier multiplier) {
+      m_multiplier = multiplier;
+    }
+
+    @Override
+    public double apply(double input, double dtSeconds) {
+      return input * m_multiplier.getAsDouble();
+    }
+  }
+}
@@ -0,0 +1,368 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.Constants.Telemetry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <> binary on-robot logger. channels are registered once at startup and get
+ * an integer handle. every loop, values are set by handle and then committed
+ * as one fixed width record (timestamp + one double per channel) into a
+ * preallocated ring buffer. a background thread drains the ring to a file, so
+ * the main loop never waits on the disk. if the writer falls behind and the
+ * ring fills up, records are dropped and counted instead of blocking
+ *
+ * <p><> file layout (big endian): the 8 byte magic "3243LOG1", an int format
+ * version, an int channel count, then every channel name as a short length
+ * followed by utf-8 bytes. after that it's just records back to back. use
+ * {@link TelemetryLogReader} or {@link TelemetryLogDecoder} to read them
+ */
+public final class TelemetryLog {
+
+  public static final byte[] kMagic = "3243LOG1".getBytes(
+    StandardCharsets.US_ASCII
+  );
+  public static final int kVersion = 1;
+
+  private static final String kFilePrefix = "telemetry_";
+  private static final String kFileSuffix = ".bin";
+
+  private static TelemetryLog instance;
+
+  private final List<String> m_channelNames = new ArrayList<>();
+
+  // <> values for the record being built this loop (index 0 is the timestamp)
+  private double[] m_current = new double[1];
+
+  // <> ring of committed records, one writer (main loop) one reader (thread)
+  private double[] m_ring;
+  private int m_recordWidth;
+  private int m_capacity;
+  private final AtomicLong m_writeCount = new AtomicLong();
+  private final AtomicLong m_readCount = new AtomicLong();
+  private long m_droppedRecords = 0;
+
+  private FileChannel m_file;
+  private Thread m_writerThread;
+  private volatile boolean m_started = false;
+  private File m_logFile;
+
+  private TelemetryLog() {}
+
+  /** @return the one telemetry log */
+  public static synchronized TelemetryLog getInstance() {
+    if (instance == null) {
+      instance = new TelemetryLog();
+    }
+    return instance;
+  }
+
+  /**
+   * <> registers a channel. this has to happen before {@link #start()},
+   * registering the same name twice returns the same handle
+   *
+   * @param name channel name (shows up as the csv column)
+   * @return handle to pass to {@link #set(int, double)}
+   */
+  public synchronized int registerChannel(String name) {
+    int existing = m_channelNames.indexOf(name);
+    if (existing != -1) {
+      return existing + 1;
+    }
+    if (m_started) {
+      throw new IllegalStateException(
+        "telemetry channel \"" + name + "\" registered after the log started"
+      );
+    }
+
+    m_channelNames.add(name);
+    m_current = new double[m_channelNames.size() + 1];
+    // <> slot 0 is the timestamp
+    return m_channelNames.size();
+  }
+
+  /**
+   * <> sets a channel's value for the current record. values stick around
+   * until they're set again
+   *
+   * @param channel handle from {@link #registerChannel(String)}
+   * @param value   the value
+   */
+  public void set(int channel, double value) {
+    m_current[channel] = value;
+  }
+
+  /**
+   * <> sets a boolean channel's value for the current record
+   *
+   * @param channel handle from {@link #registerChannel(String)}
+   * @param value   the value (logged as 1 or 0)
+   */
+  public void set(int channel, boolean value) {
+    m_current[channel] = value ? 1 : 0;
+  }
+
+  /**
+   * <> the value a channel has in the current record
+   *
+   * @param channel handle from {@link #registerChannel(String)}
+   * @return the last value set
+   */
+  public double get(int channel) {
+    return m_current[channel];
+  }
+
+  /**
+   * <> queues the current record for writing. does nothing before the log is
+   * started
+   *
+   * @param timestamp FPGA time of the record in seconds
+   */
+  public void commit(double timestamp) {
+    if (!m_started) {
+      return;
+    }
+
+    long write = m_writeCount.get();
+    if (write - m_readCount.get() >= m_capacity) {
+      m_droppedRecords++;
+      return;
+    }
+
+    m_current[0] = timestamp;
+    System.arraycopy(
+      m_current,
+      0,
+      m_ring,
+      (int) (write % m_capacity) * m_recordWidth,
+      m_recordWidth
+    );
+    m_writeCount.lazySet(write + 1);
+  }
+
+  /**
+   * <> opens a new log file in the first usable log directory and starts the
+   * writer thread. after this, no more channels can be registered
+   */
+  public synchronized void start() {
+    if (m_started) {
+      return;
+    }
+
+    File directory = findLogDirectory();
+    if (directory == null) {
+      DriverStation.reportWarning("no usable telemetry log directory", false);
+      return;
+    }
+
+    pruneOldLogs(directory);
+
+    try {
+      openLogFile(directory);
+      writeHeader();
+    } catch (IOException e) {
+      DriverStation.reportError(
+        "couldn't open telemetry log " + m_logFile,
+        e.getStackTrace()
+      );
+      return;
+    }
+
+    m_recordWidth = m_current.length;
+    m_capacity = Telemetry.kQueueCapacityRecords;
+    m_ring = new double[m_capacity * m_recordWidth];
+
+    m_writerThread = new Thread(this::writeLoop, "TelemetryLogWriter");
+    m_writerThread.setDaemon(true);
+    m_writerThread.start();
+    m_started = true;
+  }
+
+  /** @return the file being written to (null before the log starts) */
+  public File getLogFile() {
+    return m_logFile;
+  }
+
+  /** @return how many records were dropped because the writer fell behind */
+  public long getDroppedRecords() {
+    return m_droppedRecords;
+  }
+
+  // <> the first usable directory in Telemetry.kLogDirectories, null if none
+  // <> (other things that write files next to the logs use this too)
+  static File findLogDirectory() {
+    for (String path : Telemetry.kLogDirectories) {
+      File directory = new File(path);
+      // <> only use the usb drive if it's actually plugged in
+      if (directory.getParentFile() != null && !directory.getParentFile().exists()) {
+        continue;
+      }
+      if (directory.isDirectory() || directory.mkdirs()) {
+        if (directory.canWrite()) {
+          return directory;
+        }
+      }
+    }
+    return null;
+  }
+
+  // <> the clock isn't synced with the driver station yet when this runs, so
+  // <> the name can repeat from an earlier boot. never open an existing file,
+  // <> add a counter to the name instead
+  private void openLogFile(File directory) throws IOException {
+    String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+    for (int attempt = 0;; attempt++) {
+      String name =
+        kFilePrefix +
+        stamp +
+        (attempt == 0 ? "" : "_" + attempt) +
+        kFileSuffix;
+      m_logFile = new File(directory, name);
+      try {
+        m_file =
+          FileChannel.open(
+            m_logFile.toPath(),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE
+          );
+        return;
+      } catch (FileAlreadyExistsException e) {
+        if (attempt >= Telemetry.kMaxNameAttempts) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  // <> deletes the oldest logs until the ones left add up to less than
+  // <> Telemetry.kMaxLogDirectoryBytes, so the disk never fills up
+  private static void pruneOldLogs(File directory) {
+    File[] logs = directory.listFiles(
+      (dir, name) -> name.startsWith(kFilePrefix) && name.endsWith(kFileSuffix)
+    );
+    if (logs == null) {
+      return;
+    }
+    Arrays.sort(
+      logs,
+      Comparator.comparingLong(File::lastModified).thenComparing(File::getName)
+    );
+
+    long total = 0;
+    for (File log : logs) {
+      total += log.length();
+    }
+    for (File log : logs) {
+      if (total <= Telemetry.kMaxLogDirectoryBytes) {
+        break;
+      }
+      long length = log.length();
+      if (log.delete()) {
+        total -= length;
+      } else {
+        DriverStation.reportWarning(
+          "couldn't delete old telemetry log " + log,
+          false
+        );
+      }
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    List<byte[]> names = new ArrayList<>();
+    int size = kMagic.length + 8;
+    for (String channel : m_channelNames) {
+      byte[] bytes = channel.getBytes(StandardCharsets.UTF_8);
+      names.add(bytes);
+      size += 2 + bytes.length;
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(size);
+    header.put(kMagic);
+    header.putInt(kVersion);
+    header.putInt(m_channelNames.size());
+    for (byte[] bytes : names) {
+      header.putShort((short) bytes.length);
+      header.put(bytes);
+    }
+    header.flip();
+    while (header.hasRemaining()) {
+      m_file.write(header);
+    }
+  }
+
+  // <> runs on the writer thread
+  private void writeLoop() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(
+      Telemetry.kWriteBatchRecords * m_recordWidth * Double.BYTES
+    );
+
+    while (true) {
+      long read = m_readCount.get();
+      long available = m_writeCount.get() - read;
+      if (available == 0) {
+        LockSupport.parkNanos(Telemetry.kWriterIdleNanos);
+        continue;
+      }
+
+      // <> copy a batch out of the ring, then hand the slots back
+      long batch = Math.min(available, Telemetry.kWriteBatchRecords);
+      buffer.clear();
+      for (long i = 0; i < batch; i++) {
+        int offset = (int) ((read + i) % m_capacity) * m_recordWidth;
+        for (int j = 0; j < m_recordWidth; j++) {
+          buffer.putDouble(m_ring[offset + j]);
+        }
+      }
+      m_readCount.lazySet(read + batch);
+
+      buffer.flip();
+      try {
+        while (buffer.hasRemaining()) {
+          m_file.write(buffer);
+        }
+      } catch (IOException e) {
+        DriverStation.reportError(
+          "telemetry log write failed, logging stopped",
+          e.getStackTrace()
+        );
+        m_started = false;
+        return;
+      }
+    }
+  }
+
+  /**
+   * <> file name helper for tools that want to write next to a log
+   *
+   * @param log    a log file
+   * @param suffix replacement for the .bin extension
+   * @return the new path
+   */
+  public static Path siblingPath(Path log, String suffix) {
+    String name = log.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return log.resolveSibling(
+      (dot == -1 ? name : name.substring(0, dot)) + suffix
+    );
+  }
+}
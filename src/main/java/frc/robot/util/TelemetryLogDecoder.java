@@ -0,0 +1,75 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <> offline tool that turns {@link TelemetryLog} files into csv. run it on a
+ * laptop after copying logs off the robot:
+ *
+ * <pre>./gradlew decodeTelemetry -Plogs=path/to/telemetry_x.bin</pre>
+ *
+ * <p><> every .bin file given gets a .csv written next to it
+ */
+public final class TelemetryLogDecoder {
+
+  private TelemetryLogDecoder() {}
+
+  public static void main(String... args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("usage: TelemetryLogDecoder <log.bin>...");
+      System.exit(1);
+    }
+
+    for (String arg : args) {
+      Path log = Paths.get(arg);
+      Path csv = TelemetryLog.siblingPath(log, ".csv");
+      long records = decode(log, csv);
+      System.out.println(log + " -> " + csv + " (" + records + " records)");
+    }
+  }
+
+  /**
+   * <> writes a log out as csv
+   *
+   * @param log path to the .bin file
+   * @param csv path to write to
+   * @return how many records were written
+   * @throws IOException if either file can't be used
+   */
+  public static long decode(Path log, Path csv) throws IOException {
+    try (
+      TelemetryLogReader reader = new TelemetryLogReader(log);
+      BufferedWriter writer = Files.newBufferedWriter(csv)
+    ) {
+      writer.write("timestamp");
+      for (String name : reader.getChannelNames()) {
+        writer.write(',');
+        // <> quote names in case they have commas in them
+        writer.write('"' + name.replace("\"", "\"\"") + '"');
+      }
+      writer.newLine();
+
+      double[] record = new double[reader.getRecordWidth()];
+      long records = 0;
+      while (reader.next(record)) {
+        for (int i = 0; i < record.length; i++) {
+          if (i > 0) {
+            writer.write(',');
+          }
+          writer.write(Double.toString(record[i]));
+        }
+        writer.newLine();
+        records++;
+      }
+      return records;
+    }
+  }
+}
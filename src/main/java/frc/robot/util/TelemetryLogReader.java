@@ -0,0 +1,108 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <> reads back a file written by {@link TelemetryLog}, one record at a time
+ */
+public class TelemetryLogReader implements AutoCloseable {
+
+  private final DataInputStream m_input;
+  private final List<String> m_channelNames;
+
+  /**
+   * <> opens a log and reads its header
+   *
+   * @param log path to the .bin file
+   * @throws IOException if the file can't be read or isn't a telemetry log
+   */
+  public TelemetryLogReader(Path log) throws IOException {
+    m_input =
+      new DataInputStream(
+        new BufferedInputStream(new FileInputStream(log.toFile()), 1 << 16)
+      );
+
+    byte[] magic = new byte[TelemetryLog.kMagic.length];
+    m_input.readFully(magic);
+    if (!Arrays.equals(magic, TelemetryLog.kMagic)) {
+      m_input.close();
+      throw new IOException(log + " is not a telemetry log");
+    }
+    int version = m_input.readInt();
+    if (version != TelemetryLog.kVersion) {
+      m_input.close();
+      throw new IOException(
+        log + " is telemetry log version " + version + ", expected " +
+        TelemetryLog.kVersion
+      );
+    }
+
+    int channelCount = m_input.readInt();
+    List<String> names = new ArrayList<>(channelCount);
+    for (int i = 0; i < channelCount; i++) {
+      byte[] name = new byte[m_input.readUnsignedShort()];
+      m_input.readFully(name);
+      names.add(new String(name, StandardCharsets.UTF_8));
+    }
+    m_channelNames = Collections.unmodifiableList(names);
+  }
+
+  /** @return channel names in record order (not counting the timestamp) */
+  public List<String> getChannelNames() {
+    return m_channelNames;
+  }
+
+  /**
+   * <> index of a channel in a record
+   *
+   * @param name channel name
+   * @return index into the array filled by {@link #next(double[])}, or -1
+   */
+  public int indexOf(String name) {
+    int index = m_channelNames.indexOf(name);
+    return index == -1 ? -1 : index + 1;
+  }
+
+  /** @return how many doubles are in one record */
+  public int getRecordWidth() {
+    return m_channelNames.size() + 1;
+  }
+
+  /**
+   * <> reads the next record
+   *
+   * @param record filled with [timestamp, channel values...]
+   * @return false at the end of the file (a partly written last record is
+   *         ignored)
+   * @throws IOException if the file can't be read
+   */
+  public boolean next(double[] record) throws IOException {
+    try {
+      for (int i = 0; i < getRecordWidth(); i++) {
+        record[i] = m_input.readDouble();
+      }
+      return true;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    m_input.close();
+  }
+}
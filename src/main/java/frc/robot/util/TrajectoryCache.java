@@ -0,0 +1,225 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.Constants.DriveTrain.DriveConstants.AutoConstants;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <> stores generated trajectories as small binary files keyed by
+ * {@link TrajectoryDefinition#getKey()}, so the robot loads them instead of
+ * doing spline generation at boot. the cache lives in the deploy directory
+ * and is filled on the dev machine by "./gradlew generateTrajectoryCache"
+ * (which also runs before every deploy). if a trajectory isn't cached, it's
+ * generated and written to the cache so the next boot is fast anyway
+ *
+ * <p><> file layout (big endian): int magic, int state count, then seven
+ * doubles per state: time, velocity, acceleration, x, y, heading, curvature
+ */
+public final class TrajectoryCache {
+
+  private static final int kMagic = 0x54524a31; // <> "TRJ1"
+  private static final String kDirectoryName = "trajectories";
+
+  private TrajectoryCache() {}
+
+  /**
+   * <> loads a trajectory from the deploy directory's cache, generating (and
+   * caching) it if needed
+   *
+   * @param definition the trajectory to get
+   * @return the trajectory
+   */
+  public static Trajectory get(TrajectoryDefinition definition) {
+    return get(
+      definition,
+      new File(Filesystem.getDeployDirectory(), kDirectoryName)
+    );
+  }
+
+  /**
+   * <> loads a trajectory from a cache directory, generating (and caching) it
+   * if needed
+   *
+   * @param definition the trajectory to get
+   * @param directory  cache directory
+   * @return the trajectory
+   */
+  public static Trajectory get(TrajectoryDefinition definition, File directory) {
+    File file = fileFor(definition, directory);
+    if (file.isFile()) {
+      try {
+        return read(file);
+      } catch (IOException e) {
+        DriverStation.reportWarning(
+          "couldn't read cached trajectory " + file + ", regenerating",
+          false
+        );
+      }
+    } else {
+      DriverStation.reportWarning(
+        "trajectory \"" + definition.getName() +
+        "\" isn't cached, generating it (run ./gradlew generateTrajectoryCache)",
+        false
+      );
+    }
+
+    Trajectory trajectory = definition.generate();
+    try {
+      write(trajectory, file);
+    } catch (IOException e) {
+      DriverStation.reportWarning(
+        "couldn't cache trajectory " + file + ": " + e.getMessage(),
+        false
+      );
+    }
+    return trajectory;
+  }
+
+  /**
+   * <> where a trajectory would be cached
+   *
+   * @param definition the trajectory
+   * @param directory  cache directory
+   * @return the file (which might not exist)
+   */
+  public static File fileFor(TrajectoryDefinition definition, File directory) {
+    return new File(
+      directory,
+      definition.getName() + "-" + definition.getKey() + ".traj"
+    );
+  }
+
+  /**
+   * <> writes a trajectory to a file
+   *
+   * @param trajectory the trajectory
+   * @param file       where to write it
+   * @throws IOException if the file can't be written
+   */
+  public static void write(Trajectory trajectory, File file)
+    throws IOException {
+    file.getParentFile().mkdirs();
+
+    // <> write to a temp file first so a half written cache is never loaded
+    File temp = new File(file.getPath() + ".tmp");
+    try (
+      DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temp))
+      )
+    ) {
+      List<Trajectory.State> states = trajectory.getStates();
+      output.writeInt(kMagic);
+      output.writeInt(states.size());
+      for (Trajectory.State state : states) {
+        output.writeDouble(state.timeSeconds);
+        output.writeDouble(state.velocityMetersPerSecond);
+        output.writeDouble(state.accelerationMetersPerSecondSq);
+        output.writeDouble(state.poseMeters.getX());
+        output.writeDouble(state.poseMeters.getY());
+        output.writeDouble(state.poseMeters.getRotation().getRadians());
+        output.writeDouble(state.curvatureRadPerMeter);
+      }
+    }
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      throw new IOException("couldn't move " + temp + " to " + file);
+    }
+  }
+
+  /**
+   * <> reads a trajectory written by {@link #write(Trajectory, File)}
+   *
+   * @param file the cache file
+   * @return the trajectory
+   * @throws IOException if the file can't be read or isn't a trajectory
+   */
+  public static Trajectory read(File file) throws IOException {
+    try (
+      DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file))
+      )
+    ) {
+      if (input.readInt() != kMagic) {
+        throw new IOException(file + " is not a cached trajectory");
+      }
+
+      int count = input.readInt();
+      List<Trajectory.State> states = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        double time = input.readDouble();
+        double velocity = input.readDouble();
+        double acceleration = input.readDouble();
+        double x = input.readDouble();
+        double y = input.readDouble();
+        double heading = input.readDouble();
+        double curvature = input.readDouble();
+        states.add(
+          new Trajectory.State(
+            time,
+            velocity,
+            acceleration,
+            new Pose2d(x, y, new Rotation2d(heading)),
+            curvature
+          )
+        );
+      }
+      return new Trajectory(states);
+    }
+  }
+
+  /**
+   * <> pre-generates every trajectory in {@link AutoConstants.Paths#kAll}.
+   * run on the dev machine through gradle, the only argument is the cache
+   * directory
+   */
+  public static void main(String... args) throws IOException {
+    File directory = new File(args.length > 0 ? args[0] : kDirectoryName);
+
+    for (TrajectoryDefinition definition : AutoConstants.Paths.kAll) {
+      File file = fileFor(definition, directory);
+      if (file.isFile()) {
+        System.out.println("up to date: " + file.getName());
+        continue;
+      }
+
+      long start = System.nanoTime();
+      write(definition.generate(), file);
+      System.out.printf(
+        "generated %s in %.1f ms%n",
+        file.getName(),
+        (System.nanoTime() - start) / 1e6
+      );
+    }
+
+    // <> clean out trajectories that aren't used anymore
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(".traj"));
+    if (files != null) {
+      for (File file : files) {
+        boolean used = false;
+        for (TrajectoryDefinition definition : AutoConstants.Paths.kAll) {
+          used |= fileFor(definition, directory).getName().equals(file.getName());
+        }
+        if (!used && file.delete()) {
+          System.out.println("removed stale: " + file.getName());
+        }
+      }
+    }
+  }
+}
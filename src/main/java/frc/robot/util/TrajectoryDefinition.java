@@ -0,0 +1,117 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.trajectory.constraint.TrajectoryConstraint;
+import frc.robot.Constants.DriveTrain.DriveConstants.ChasisKinematics;
+import java.util.List;
+
+/**
+ * <> everything TrajectoryGenerator needs to build a trajectory (waypoints and
+ * config), plus a key that changes whenever any of it does. the key is what
+ * {@link TrajectoryCache} files are named after
+ */
+public class TrajectoryDefinition {
+
+  // <> bump if the way trajectories are generated or stored changes
+  private static final int kFormatVersion = 1;
+
+  private final String m_name;
+  private final Pose2d m_start;
+  private final List<Translation2d> m_interiorWaypoints;
+  private final Pose2d m_end;
+  private final TrajectoryConfig m_config;
+
+  /**
+   * <> define a trajectory
+   *
+   * @param name              human readable name, used in file names
+   * @param start             starting pose
+   * @param interiorWaypoints points to pass through
+   * @param end               ending pose
+   * @param config            velocity and acceleration limits
+   */
+  public TrajectoryDefinition(
+    String name,
+    Pose2d start,
+    List<Translation2d> interiorWaypoints,
+    Pose2d end,
+    TrajectoryConfig config
+  ) {
+    m_name = name;
+    m_start = start;
+    m_interiorWaypoints = List.copyOf(interiorWaypoints);
+    m_end = end;
+    m_config = config;
+  }
+
+  public String getName() {
+    return m_name;
+  }
+
+  /** <> does the actual (slow) spline math */
+  public Trajectory generate() {
+    return TrajectoryGenerator.generateTrajectory(
+      m_start,
+      m_interiorWaypoints,
+      m_end,
+      m_config
+    );
+  }
+
+  /**
+   * <> 64 bit hash of the waypoints and config. constraints don't expose
+   * their parameters, so they're keyed by type, and the drivetrain geometry
+   * (which the kinematics constraint uses) is hashed in separately
+   *
+   * @return key as hex
+   */
+  public String getKey() {
+    long hash = 0xcbf29ce484222325L;
+    hash = mix(hash, kFormatVersion);
+    hash = mix(hash, m_start);
+    for (Translation2d waypoint : m_interiorWaypoints) {
+      hash = mix(hash, waypoint.getX());
+      hash = mix(hash, waypoint.getY());
+    }
+    hash = mix(hash, m_end);
+
+    hash = mix(hash, m_config.getMaxVelocity());
+    hash = mix(hash, m_config.getMaxAcceleration());
+    hash = mix(hash, m_config.getStartVelocity());
+    hash = mix(hash, m_config.getEndVelocity());
+    hash = mix(hash, m_config.isReversed() ? 1 : 0);
+    for (TrajectoryConstraint constraint : m_config.getConstraints()) {
+      hash = mix(hash, constraint.getClass().getName().hashCode());
+    }
+    for (Translation2d module : ChasisKinematics.kModuleTranslations) {
+      hash = mix(hash, module.getX());
+      hash = mix(hash, module.getY());
+    }
+
+    return Long.toHexString(hash);
+  }
+
+  private static long mix(long hash, Pose2d pose) {
+    hash = mix(hash, pose.getX());
+    hash = mix(hash, pose.getY());
+    return mix(hash, pose.getRotation().getRadians());
+  }
+
+  // <> fnv-1a over the bits of the value
+  private static long mix(long hash, double value) {
+    long bits = Double.doubleToLongBits(value);
+    for (int i = 0; i < 8; i++) {
+      hash ^= (bits >>> (i * 8)) & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,234 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.Profiling;
+import frc.robot.Constants.Soak;
+import frc.robot.commands.SwerveTrajectoryFollowCommand;
+import frc.robot.util.LoopHistogram;
+import frc.robot.util.LoopProfiler;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <> builds the whole robot (RobotContainer) on the simulated HAL and steps
+ * the command scheduler for tens of thousands of loops as fast as the cpu
+ * allows: teleop with made up stick input, then the trajectory follow
+ * command over and over. every loop is timed and its allocation counted
+ *
+ * <p><> bytes per loop always has to stay in budget (it doesn't depend on
+ * how busy the machine is). loop times only get checked when asked for with
+ * "./gradlew test -PsoakTiming", on a quiet machine
+ *
+ * <p><> the robot clock is stepped one loop period per loop, so the robot
+ * code sees real time go by while the loop times are measured on the wall
+ * clock. the first few thousand loops of each phase are thrown away while
+ * the jit warms up
+ */
+class SchedulerSoakTest {
+
+  /** <> one phase's loop times and allocation */
+  private static final class Phase {
+
+    private final String m_name;
+    private final LoopHistogram m_loopTimes = new LoopHistogram(
+      Profiling.kHistogramBinMicros,
+      Profiling.kHistogramBins
+    );
+    private long m_totalBytes = 0;
+    private long m_maxBytes = 0;
+
+    private Phase(String name) {
+      m_name = name;
+    }
+
+    private void record(long nanos, long bytes) {
+      m_loopTimes.record(nanos);
+      m_totalBytes += bytes;
+      m_maxBytes = Math.max(m_maxBytes, bytes);
+    }
+
+    private double meanBytes() {
+      long count = m_loopTimes.getCount();
+      return count == 0 ? 0 : (double) m_totalBytes / count;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "%-12s %6d loops  p50 %6.3f ms  p99 %6.3f ms  max %6.3f ms  %8.0f bytes/loop (max %d)",
+        m_name,
+        m_loopTimes.getCount(),
+        m_loopTimes.getPercentileMillis(0.5),
+        m_loopTimes.getPercentileMillis(0.99),
+        m_loopTimes.getMaxMillis(),
+        meanBytes(),
+        m_maxBytes
+      );
+    }
+  }
+
+  private static ThreadMXBean s_threads;
+  private static Phase s_teleop;
+  private static Phase s_trajectory;
+  private static int s_trajectoryRuns = 0;
+
+  @BeforeAll
+  static void soak() {
+    assertTrue(HAL.initialize(500, 0));
+    s_threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    s_threads.setThreadAllocatedMemoryEnabled(true);
+
+    // <> the clock only moves when a loop says it does
+    SimHooks.pauseTiming();
+
+    RobotContainer container = new RobotContainer();
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    XboxControllerSim driver = new XboxControllerSim(
+      Constants.Joysticks.primaryControllerID
+    );
+
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setTest(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    // <> teleop: sticks sweep around at a few different rates so the
+    // <> drivetrain is always doing something
+    s_teleop = new Phase("teleop");
+    for (int i = 0; i < Soak.kTeleopLoops; i++) {
+      double t = i * Profiling.kLoopPeriodSeconds;
+      driver.setLeftX(0.8 * Math.sin(2 * Math.PI * 0.3 * t));
+      driver.setLeftY(0.8 * Math.cos(2 * Math.PI * 0.2 * t));
+      driver.setRightX(0.5 * Math.sin(2 * Math.PI * 0.7 * t));
+      driver.setRightTriggerAxis((i / 500) % 2 == 0 ? 0 : 1);
+      step(scheduler, driver, s_teleop, i >= Soak.kWarmupLoops);
+    }
+
+    // <> trajectory: sticks let go, A pressed whenever the trajectory isn't
+    // <> running (it's bound with onTrue, so it starts on the press)
+    driver.setLeftX(0);
+    driver.setLeftY(0);
+    driver.setRightX(0);
+    driver.setRightTriggerAxis(0);
+    s_trajectory = new Phase("trajectory");
+    boolean pressed = false;
+    boolean wasFollowing = false;
+    for (int i = 0; i < Soak.kTrajectoryLoops; i++) {
+      Command current = scheduler.requiring(container.getDriveSubsystem());
+      boolean following = current instanceof SwerveTrajectoryFollowCommand;
+      // <> only count a run once the scheduler has actually started it
+      if (following && !wasFollowing) {
+        s_trajectoryRuns++;
+      }
+      wasFollowing = following;
+      // <> let go for a loop in between, so every press is a new press
+      pressed = !following && !pressed;
+      driver.setAButton(pressed);
+      step(scheduler, driver, s_trajectory, i >= Soak.kWarmupLoops);
+    }
+
+    System.out.println(s_teleop);
+    System.out.println(s_trajectory + "  (" + s_trajectoryRuns + " runs)");
+  }
+
+  // <> one robot loop, timed the same way Robot.robotPeriodic() times it
+  private static void step(
+    CommandScheduler scheduler,
+    XboxControllerSim driver,
+    Phase phase,
+    boolean record
+  ) {
+    SimHooks.stepTiming(Profiling.kLoopPeriodSeconds);
+    driver.notifyNewData();
+    DriverStation.refreshData();
+
+    long startBytes = s_threads.getCurrentThreadAllocatedBytes();
+    long start = System.nanoTime();
+    LoopProfiler.getInstance().beginCycle();
+    scheduler.run();
+    LoopProfiler.getInstance().endCycle();
+    long nanos = System.nanoTime() - start;
+    long bytes = s_threads.getCurrentThreadAllocatedBytes() - startBytes;
+
+    if (record) {
+      phase.record(nanos, bytes);
+    }
+  }
+
+  private static void assertAllocationInBudget(Phase phase) {
+    assertTrue(
+      phase.meanBytes() <= Soak.kMaxBytesPerLoop,
+      String.format(
+        "%s: %.0f bytes per loop > %d",
+        phase.m_name,
+        phase.meanBytes(),
+        Soak.kMaxBytesPerLoop
+      )
+    );
+  }
+
+  private static void assertLoopTimesInBudget(Phase phase) {
+    double p99 = phase.m_loopTimes.getPercentileMillis(0.99);
+    assertTrue(
+      p99 <= Soak.kMaxP99Millis,
+      String.format(
+        "%s: p99 loop %.2f ms > %.2f ms",
+        phase.m_name,
+        p99,
+        Soak.kMaxP99Millis
+      )
+    );
+    double max = phase.m_loopTimes.getMaxMillis();
+    assertTrue(
+      max <= Soak.kMaxLoopMillis,
+      String.format(
+        "%s: max loop %.2f ms > %.2f ms",
+        phase.m_name,
+        max,
+        Soak.kMaxLoopMillis
+      )
+    );
+  }
+
+  @Test
+  void teleopAllocationInBudget() {
+    assertAllocationInBudget(s_teleop);
+  }
+
+  @Test
+  void trajectoryAllocationInBudget() {
+    assertAllocationInBudget(s_trajectory);
+  }
+
+  @Test
+  void trajectoryRestarts() {
+    assertTrue(
+      s_trajectoryRuns >= 2,
+      "trajectory only started " + s_trajectoryRuns + " times"
+    );
+  }
+
+  // <> shared machines (and ci) stall for reasons that have nothing to do
+  // <> with the robot code, so this is opt in
+  @Test
+  void loopTimesInBudget() {
+    assumeTrue(Boolean.getBoolean(Soak.kTimingProperty));
+    assertLoopTimesInBudget(s_teleop);
+    assertLoopTimesInBudget(s_trajectory);
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import frc.robot.Constants.DriveTrain.DriveConstants;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+class AllocationFreeOdometryTest {
+
+  private static final int kModules = 4;
+  private static final int kWarmupUpdates = 20000;
+  private static final int kMeasuredUpdates = 10000;
+
+  private final double[] m_distances = new double[kModules];
+  private final double[] m_angles = new double[kModules];
+
+  // <> modules roll forward while steering slowly and the gyro turns, so
+  // <> every term of the update does something
+  private double step(int i) {
+    for (int module = 0; module < kModules; module++) {
+      m_distances[module] += 0.02 * (1 + 0.1 * module);
+      m_angles[module] = Math.sin(i * 0.01 + module);
+    }
+    return i * 0.002;
+  }
+
+  @Test
+  void updateDoesNotAllocate() {
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    AllocationFreeOdometry odometry = new AllocationFreeOdometry(
+      DriveConstants.ChasisKinematics.kModuleTranslations,
+      0,
+      m_distances,
+      new Pose2d()
+    );
+
+    // <> let the jit compile update() so only its own allocation is left
+    for (int i = 0; i < kWarmupUpdates; i++) {
+      odometry.update(step(i), m_distances, m_angles);
+    }
+
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = kWarmupUpdates; i < kWarmupUpdates + kMeasuredUpdates; i++) {
+      odometry.update(step(i), m_distances, m_angles);
+    }
+    long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+    assertEquals(
+      0,
+      allocated,
+      "bytes allocated by " + kMeasuredUpdates + " updates"
+    );
+  }
+
+  @Test
+  void matchesWPILibOdometry() {
+    SwerveModulePosition[] positions = new SwerveModulePosition[kModules];
+    for (int module = 0; module < kModules; module++) {
+      positions[module] = new SwerveModulePosition();
+    }
+    SwerveDriveOdometry reference = new SwerveDriveOdometry(
+      new SwerveDriveKinematics(
+        DriveConstants.ChasisKinematics.kModuleTranslations
+      ),
+      new Rotation2d(),
+      positions
+    );
+    AllocationFreeOdometry odometry = new AllocationFreeOdometry(
+      DriveConstants.ChasisKinematics.kModuleTranslations,
+      0,
+      m_distances,
+      new Pose2d()
+    );
+
+    for (int i = 0; i < 1000; i++) {
+      double gyro = step(i);
+      for (int module = 0; module < kModules; module++) {
+        positions[module] =
+          new SwerveModulePosition(
+            m_distances[module],
+            new Rotation2d(m_angles[module])
+          );
+      }
+      Pose2d expected = reference.update(new Rotation2d(gyro), positions);
+      odometry.update(gyro, m_distances, m_angles);
+
+      assertEquals(expected.getX(), odometry.getX(), 1e-9);
+      assertEquals(expected.getY(), odometry.getY(), 1e-9);
+      assertEquals(
+        expected.getRotation().getRadians(),
+        odometry.getThetaRadians(),
+        1e-9
+      );
+    }
+  }
+}
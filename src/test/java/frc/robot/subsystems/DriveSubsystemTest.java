@@ -0,0 +1,156 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.Constants.DriveTrain.DriveConstants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DriveSubsystemTest {
+
+  private static final double kEpsilon = 1e-9;
+  private static final int kLoops = 50;
+
+  // <> kinematics order, same as the DriveSubsystem constructor
+  private static final Rotation2d[] kOffsets = {
+    DriveConstants.ModuleOffsets.kFrontLeftOffset,
+    DriveConstants.ModuleOffsets.kFrontRightOffset,
+    DriveConstants.ModuleOffsets.kBackLeftOffset,
+    DriveConstants.ModuleOffsets.kBackRightOffset,
+  };
+
+  private final ModuleIOReplay[] m_modules = new ModuleIOReplay[4];
+  private final GyroIOReplay m_gyro = new GyroIOReplay();
+  private DriveSubsystem m_drive;
+
+  @BeforeAll
+  static void initializeHAL() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @BeforeEach
+  void createDrive() {
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i] = new ModuleIOReplay();
+    }
+    m_gyro.inputs.connected = true;
+    m_drive =
+      new DriveSubsystem(
+        m_modules[0],
+        m_modules[1],
+        m_modules[2],
+        m_modules[3],
+        m_gyro
+      );
+  }
+
+  // <> points module i at angleRadians relative to the robot (the replayed
+  // <> readings are raw, so the chassis offset goes back on)
+  private void setModuleAngle(int module, double angleRadians) {
+    m_modules[module].inputs.turningPositionRadians =
+      angleRadians + kOffsets[module].getRadians();
+  }
+
+  // <> rolls every module forward by metersPerLoop for kLoops loops
+  private void roll(double metersPerLoop) {
+    for (int loop = 0; loop < kLoops; loop++) {
+      for (ModuleIOReplay module : m_modules) {
+        module.inputs.drivePositionMeters += metersPerLoop;
+      }
+      m_drive.periodic();
+    }
+  }
+
+  private void assertPose(double x, double y, double thetaRadians) {
+    double[] pose = new double[3];
+    m_drive.getPose(pose);
+    assertEquals(x, pose[0], kEpsilon, "x");
+    assertEquals(y, pose[1], kEpsilon, "y");
+    assertEquals(thetaRadians, pose[2], kEpsilon, "theta");
+  }
+
+  @Test
+  void drivesStraightForward() {
+    for (int i = 0; i < m_modules.length; i++) {
+      setModuleAngle(i, 0);
+    }
+    roll(0.02);
+    assertPose(1.0, 0, 0);
+  }
+
+  @Test
+  void strafesLeft() {
+    for (int i = 0; i < m_modules.length; i++) {
+      setModuleAngle(i, Math.PI / 2);
+    }
+    roll(0.01);
+    assertPose(0, 0.5, 0);
+  }
+
+  @Test
+  void spinsInPlace() {
+    // <> every wheel at right angles to its corner, so they only turn the
+    // <> robot, and the gyro says how far
+    for (int i = 0; i < m_modules.length; i++) {
+      Translation2d corner =
+        DriveConstants.ChasisKinematics.kModuleTranslations[i];
+      setModuleAngle(i, Math.atan2(corner.getX(), -corner.getY()));
+    }
+    for (int loop = 1; loop <= kLoops; loop++) {
+      for (ModuleIOReplay module : m_modules) {
+        module.inputs.drivePositionMeters += 0.01;
+      }
+      // <> the gyro is mounted reversed
+      m_gyro.inputs.angleDegrees =
+        (DriveConstants.kGyroReversed ? -90.0 : 90.0) * loop / kLoops;
+      m_drive.periodic();
+    }
+    assertPose(0, 0, Math.PI / 2);
+  }
+
+  @Test
+  void odometryStartsFromReset() {
+    for (int i = 0; i < m_modules.length; i++) {
+      setModuleAngle(i, 0);
+      m_modules[i].inputs.drivePositionMeters = 3.0;
+    }
+    m_drive.periodic();
+    m_drive.resetOdometry(new Pose2d(1, 2, new Rotation2d()));
+    roll(0.02);
+    assertPose(2.0, 2, 0);
+  }
+
+  @Test
+  void chassisSpeedsCommandEveryModule() {
+    for (int i = 0; i < m_modules.length; i++) {
+      setModuleAngle(i, 0);
+    }
+    m_drive.periodic();
+
+    // <> straight forward, faster than the modules can go
+    m_drive.setChassisSpeeds(2 * DriveConstants.kMaxMetersPerSecond, 0, 0);
+    for (int i = 0; i < m_modules.length; i++) {
+      assertEquals(
+        DriveConstants.kMaxMetersPerSecond,
+        m_modules[i].getDriveVelocitySetpoint(),
+        kEpsilon,
+        "module " + i + " speed"
+      );
+      // <> the turning setpoint is raw, compare it as a direction
+      double turning = m_modules[i].getTurningPositionSetpoint();
+      double expected = kOffsets[i].getRadians();
+      assertEquals(Math.cos(expected), Math.cos(turning), kEpsilon);
+      assertEquals(Math.sin(expected), Math.sin(turning), kEpsilon);
+    }
+  }
+}
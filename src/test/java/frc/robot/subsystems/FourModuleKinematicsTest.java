@@ -0,0 +1,169 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.DriveTrain.DriveConstants;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <> FourModuleKinematics replaces wpilib's kinematics in drive(), so every
+ * answer has to be bit for bit the same, not just close
+ */
+class FourModuleKinematicsTest {
+
+  private static final int kModules = 4;
+  private static final int kRandomSamples = 100000;
+  private static final long kSeed = 3243;
+
+  private SwerveDriveKinematics m_reference;
+  private FourModuleKinematics m_kinematics;
+  private final double[] m_speeds = new double[kModules];
+  private final double[] m_angles = new double[kModules];
+
+  // <> fresh ones for every test, so the remembered angles start out the same
+  @BeforeEach
+  void createKinematics() {
+    m_reference =
+      new SwerveDriveKinematics(
+        DriveConstants.ChasisKinematics.kModuleTranslations
+      );
+    m_kinematics =
+      new FourModuleKinematics(
+        DriveConstants.ChasisKinematics.kModuleTranslations
+      );
+  }
+
+  // <> runs the same chassis speeds through both and compares exactly
+  private void assertMatches(
+    String label,
+    double vx,
+    double vy,
+    double omega,
+    boolean fieldRelative,
+    double headingRadians,
+    double maxSpeed
+  ) {
+    SwerveModuleState[] expected = m_reference.toSwerveModuleStates(
+      fieldRelative
+        ? ChassisSpeeds.fromFieldRelativeSpeeds(
+          vx,
+          vy,
+          omega,
+          new Rotation2d(headingRadians)
+        )
+        : new ChassisSpeeds(vx, vy, omega)
+    );
+    SwerveDriveKinematics.desaturateWheelSpeeds(expected, maxSpeed);
+
+    if (fieldRelative) {
+      m_kinematics.toModuleStatesFieldRelative(
+        vx,
+        vy,
+        omega,
+        headingRadians,
+        m_speeds,
+        m_angles
+      );
+    } else {
+      m_kinematics.toModuleStates(vx, vy, omega, m_speeds, m_angles);
+    }
+    FourModuleKinematics.desaturate(m_speeds, maxSpeed);
+
+    for (int i = 0; i < kModules; i++) {
+      assertEquals(
+        expected[i].speedMetersPerSecond,
+        m_speeds[i],
+        0.0,
+        label + " module " + i + " speed"
+      );
+      assertEquals(
+        expected[i].angle.getRadians(),
+        m_angles[i],
+        0.0,
+        label + " module " + i + " angle"
+      );
+    }
+  }
+
+  @Test
+  void randomSpeedsMatchWPILib() {
+    Random random = new Random(kSeed);
+    for (int sample = 0; sample < kRandomSamples; sample++) {
+      // <> stops mixed in, so keeping the last angles gets exercised too
+      boolean stop = random.nextInt(10) == 0;
+      double vx = stop ? 0 : (random.nextDouble() * 2 - 1) * 5;
+      double vy = stop ? 0 : (random.nextDouble() * 2 - 1) * 5;
+      double omega = stop ? 0 : (random.nextDouble() * 2 - 1) * 2 * Math.PI;
+      double heading = (random.nextDouble() * 2 - 1) * 4 * Math.PI;
+      boolean fieldRelative = random.nextBoolean();
+      double max = 1 + random.nextDouble() * 4;
+      assertMatches(
+        "sample " + sample,
+        vx,
+        vy,
+        omega,
+        fieldRelative,
+        heading,
+        max
+      );
+    }
+  }
+
+  @Test
+  void stopKeepsLastAngles() {
+    assertMatches("moving", 1.0, 0.5, 0.3, false, 0, 5);
+    assertMatches("stopped", 0, 0, 0, false, 0, 5);
+    assertMatches("still stopped", 0, 0, 0, true, 1.0, 5);
+  }
+
+  @Test
+  void stopBeforeMovingPointsForward() {
+    assertMatches("stopped", 0, 0, 0, false, 0, 5);
+  }
+
+  @Test
+  void desaturatesLikeWPILib() {
+    // <> every module over the max, some over and some under, and spinning
+    // <> in place (where every module is equally fast)
+    assertMatches("straight", 10, 0, 0, false, 0, 2.5);
+    assertMatches("turning", 2.0, 0, 4.0, false, 0, 2.5);
+    assertMatches("spinning", 0, 0, 20, false, 0, 2.5);
+    assertMatches("backwards", -10, -3, -1, false, 0, 2.5);
+    assertMatches("under", 0.5, 0.2, 0.1, false, 0, 2.5);
+  }
+
+  @Test
+  void fieldRelativeMatchesWPILib() {
+    double[] headings = {
+      0,
+      Math.PI / 2,
+      Math.PI,
+      -Math.PI / 2,
+      Math.PI / 6,
+      3 * Math.PI,
+      -7.5,
+    };
+    for (double heading : headings) {
+      assertMatches("heading " + heading, 1.5, -0.7, 0.9, true, heading, 5);
+      assertMatches(
+        "heading " + heading + " fast",
+        6,
+        4,
+        3,
+        true,
+        heading,
+        2.5
+      );
+    }
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.MathUtil;
+import org.junit.jupiter.api.Test;
+
+class PoseHistoryTest {
+
+  private static final double kEpsilon = 1e-12;
+  private static final int kCapacity = 8;
+
+  private final PoseHistory m_history = new PoseHistory(kCapacity);
+  private final double[] m_pose = new double[3];
+
+  // <> sample i is at time i, x = i, y = -2i, theta = 0.1i
+  private void addSamples(int first, int last) {
+    for (int i = first; i <= last; i++) {
+      m_history.add(i, i, -2 * i, 0.1 * i);
+    }
+  }
+
+  private void assertSample(
+    double timestamp,
+    double x,
+    double y,
+    double thetaRadians
+  ) {
+    assertTrue(m_history.sample(timestamp, m_pose));
+    assertEquals(x, m_pose[0], kEpsilon, "x at " + timestamp);
+    assertEquals(y, m_pose[1], kEpsilon, "y at " + timestamp);
+    assertEquals(thetaRadians, m_pose[2], kEpsilon, "theta at " + timestamp);
+  }
+
+  @Test
+  void emptyHistoryHasNoSample() {
+    assertFalse(m_history.sample(1.0, m_pose));
+  }
+
+  @Test
+  void exactHitsReturnStoredSamples() {
+    addSamples(0, 5);
+    for (int i = 0; i <= 5; i++) {
+      assertSample(i, i, -2 * i, 0.1 * i);
+    }
+  }
+
+  @Test
+  void interpolatesBetweenSamples() {
+    addSamples(0, 5);
+    assertSample(2.25, 2.25, -4.5, 0.225);
+  }
+
+  @Test
+  void clampsOutsideTheHistory() {
+    addSamples(3, 6);
+    assertSample(-100, 3, -6, 0.3);
+    assertSample(2.5, 3, -6, 0.3);
+    assertSample(6.5, 6, -12, 0.6);
+    assertSample(100, 6, -12, 0.6);
+  }
+
+  @Test
+  void lookupsAfterWrapping() {
+    // <> two and a half times around, so the oldest sample is mid array
+    addSamples(0, 2 * kCapacity + kCapacity / 2);
+    int newest = 2 * kCapacity + kCapacity / 2;
+    int oldest = newest - kCapacity + 1;
+    assertEquals(kCapacity, m_history.size());
+
+    // <> the overwritten samples are gone, so earlier times clamp
+    assertSample(oldest - 3, oldest, -2 * oldest, 0.1 * oldest);
+    for (int i = oldest; i <= newest; i++) {
+      assertSample(i, i, -2 * i, 0.1 * i);
+    }
+    for (int i = oldest; i < newest; i++) {
+      double t = i + 0.5;
+      assertSample(t, t, -2 * t, 0.1 * t);
+    }
+    assertSample(newest + 1, newest, -2 * newest, 0.1 * newest);
+  }
+
+  @Test
+  void interpolatesTheShortWayAcrossPi() {
+    m_history.add(0, 0, 0, Math.PI - 0.1);
+    m_history.add(1, 0, 0, -Math.PI + 0.1);
+
+    // <> 0.2 radians apart going through pi, not 2 pi - 0.2 the other way
+    assertTrue(m_history.sample(0.5, m_pose));
+    assertEquals(0, MathUtil.angleModulus(m_pose[2] - Math.PI), kEpsilon);
+    assertTrue(m_history.sample(0.25, m_pose));
+    assertEquals(
+      0,
+      MathUtil.angleModulus(m_pose[2] - (Math.PI - 0.05)),
+      kEpsilon
+    );
+  }
+
+  @Test
+  void outOfOrderSamplesAreIgnored() {
+    addSamples(0, 3);
+    m_history.add(2.5, 100, 100, 1);
+    m_history.add(3, 100, 100, 1);
+    assertEquals(4, m_history.size());
+    assertSample(2.5, 2.5, -5, 0.25);
+    assertSample(3, 3, -6, 0.3);
+
+    // <> a newer sample still goes in
+    m_history.add(4, 4, -8, 0.4);
+    assertEquals(5, m_history.size());
+    assertSample(3.5, 3.5, -7, 0.35);
+  }
+}
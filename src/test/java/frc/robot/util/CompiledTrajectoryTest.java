@@ -0,0 +1,133 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CompiledTrajectoryTest {
+
+  // <> how far a lerp between two samples can be from the spline
+  private static final double kLerpTolerance = 1e-3;
+
+  private static Trajectory s_trajectory;
+
+  @BeforeAll
+  static void generate() {
+    s_trajectory =
+      TrajectoryGenerator.generateTrajectory(
+        new Pose2d(0, 0, new Rotation2d()),
+        List.of(new Translation2d(1, 0.5), new Translation2d(2, -0.5)),
+        new Pose2d(3, 0, Rotation2d.fromDegrees(170)),
+        new TrajectoryConfig(2.0, 2.0)
+      );
+  }
+
+  // <> a time step the total time isn't a multiple of, so the last interval
+  // <> is shorter than the rest
+  private static double unevenDt() {
+    return s_trajectory.getTotalTimeSeconds() / 100.4;
+  }
+
+  private static void assertEndState(double[] sample) {
+    Trajectory.State end = s_trajectory
+      .getStates()
+      .get(s_trajectory.getStates().size() - 1);
+    assertEquals(end.poseMeters.getX(), sample[CompiledTrajectory.kX]);
+    assertEquals(end.poseMeters.getY(), sample[CompiledTrajectory.kY]);
+    assertEquals(
+      end.velocityMetersPerSecond,
+      sample[CompiledTrajectory.kVelocity]
+    );
+    assertEquals(
+      end.accelerationMetersPerSecondSq,
+      sample[CompiledTrajectory.kAcceleration]
+    );
+    assertEquals(
+      end.curvatureRadPerMeter,
+      sample[CompiledTrajectory.kCurvature]
+    );
+    // <> headings are unwrapped
+    assertEquals(
+      0,
+      MathUtil.angleModulus(
+        sample[CompiledTrajectory.kHeading] -
+        end.poseMeters.getRotation().getRadians()
+      ),
+      1e-12
+    );
+  }
+
+  @Test
+  void endIsTheFinalState() {
+    for (double dt : new double[] { unevenDt(), 0.02 }) {
+      CompiledTrajectory compiled = new CompiledTrajectory(s_trajectory, dt);
+      double[] sample = new double[CompiledTrajectory.kSampleSize];
+
+      compiled.sample(compiled.getTotalTimeSeconds(), sample);
+      assertEndState(sample);
+      compiled.sample(compiled.getTotalTimeSeconds() + 1, sample);
+      assertEndState(sample);
+    }
+  }
+
+  @Test
+  void lastIntervalFollowsTheTrajectory() {
+    double dt = unevenDt();
+    CompiledTrajectory compiled = new CompiledTrajectory(s_trajectory, dt);
+    double total = compiled.getTotalTimeSeconds();
+    double lastStart = (compiled.getSampleCount() - 2) * dt;
+    assertTrue(total - lastStart < dt * 0.9, "last interval isn't short");
+
+    double[] sample = new double[CompiledTrajectory.kSampleSize];
+    for (double fraction = 0; fraction < 1; fraction += 0.1) {
+      double t = lastStart + (total - lastStart) * fraction;
+      compiled.sample(t, sample);
+      Trajectory.State expected = s_trajectory.sample(t);
+      assertEquals(
+        expected.poseMeters.getX(),
+        sample[CompiledTrajectory.kX],
+        kLerpTolerance,
+        "x at " + t
+      );
+      assertEquals(
+        expected.poseMeters.getY(),
+        sample[CompiledTrajectory.kY],
+        kLerpTolerance,
+        "y at " + t
+      );
+      assertEquals(
+        expected.velocityMetersPerSecond,
+        sample[CompiledTrajectory.kVelocity],
+        kLerpTolerance,
+        "velocity at " + t
+      );
+    }
+  }
+
+  @Test
+  void startIsTheFirstState() {
+    CompiledTrajectory compiled = new CompiledTrajectory(
+      s_trajectory,
+      unevenDt()
+    );
+    double[] sample = new double[CompiledTrajectory.kSampleSize];
+    compiled.sample(-1, sample);
+    assertEquals(0, sample[CompiledTrajectory.kX]);
+    assertEquals(0, sample[CompiledTrajectory.kY]);
+    assertEquals(0, sample[CompiledTrajectory.kVelocity]);
+  }
+}
@@ -0,0 +1,198 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.robot.Constants;
+import frc.robot.Constants.Profiling;
+import frc.robot.JoyUtil;
+import frc.robot.commands.SwerveTeleopCommand;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.GyroIOReplay;
+import frc.robot.subsystems.ModuleIOReplay;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * <> records a short made up teleop session with the real TelemetryLog (the
+ * same loop Robot runs: read inputs, subsystems, teleop, commit), then
+ * replays it with LogReplay
+ */
+class LogReplayTest {
+
+  private static final int kLoops = 150;
+
+  // <> the loop whose input gets changed in the perturbed copy
+  private static final int kPerturbedLoop = 100;
+
+  private static Path s_log;
+
+  @BeforeAll
+  static void record() throws IOException, InterruptedException {
+    assertTrue(HAL.initialize(500, 0));
+    SimHooks.pauseTiming();
+    SimHooks.restartTiming();
+
+    ModuleIOReplay[] modules = new ModuleIOReplay[4];
+    for (int i = 0; i < modules.length; i++) {
+      modules[i] = new ModuleIOReplay();
+    }
+    GyroIOReplay gyro = new GyroIOReplay();
+    gyro.inputs.connected = true;
+    // <> the drivetrain starts on the first loop's readings, like LogReplay
+    setDrivetrainInputs(0, modules, gyro);
+
+    DriveSubsystem drive = new DriveSubsystem(
+      modules[0],
+      modules[1],
+      modules[2],
+      modules[3],
+      gyro
+    );
+    JoyUtil controller = new JoyUtil(Constants.Joysticks.primaryControllerID);
+    XboxControllerSim controllerSim = new XboxControllerSim(controller);
+    SwerveTeleopCommand teleop = new SwerveTeleopCommand(drive, controller);
+
+    TelemetryLog log = TelemetryLog.getInstance();
+    log.start();
+    assertNotNull(log.getLogFile(), "no telemetry log directory");
+    s_log = log.getLogFile().toPath();
+
+    for (int loop = 0; loop < kLoops; loop++) {
+      SimHooks.stepTiming(Profiling.kLoopPeriodSeconds);
+
+      double t = loop * Profiling.kLoopPeriodSeconds;
+      setDrivetrainInputs(t, modules, gyro);
+      controllerSim.setLeftX(0.3 * Math.sin(2 * t));
+      controllerSim.setLeftY(-0.6);
+      controllerSim.setRightX(0.2 * Math.cos(3 * t));
+      controllerSim.setRightTriggerAxis(loop < kLoops / 2 ? 0 : 1);
+      controllerSim.notifyNewData();
+
+      drive.periodic();
+      teleop.execute();
+      log.commit(Timer.getFPGATimestamp());
+    }
+
+    // <> the writer thread drains the log in the background
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while (countRecords(s_log) < kLoops && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, log.getDroppedRecords());
+    assertEquals(kLoops, countRecords(s_log));
+  }
+
+  // <> the robot rolls forward while turning a little
+  private static void setDrivetrainInputs(
+    double t,
+    ModuleIOReplay[] modules,
+    GyroIOReplay gyro
+  ) {
+    for (int i = 0; i < modules.length; i++) {
+      modules[i].inputs.drivePositionMeters = 0.5 * t;
+      modules[i].inputs.driveVelocityMetersPerSecond = 0.5;
+      modules[i].inputs.turningPositionRadians = 0.2 * Math.sin(t + i);
+    }
+    gyro.inputs.angleDegrees = 10 * t;
+    gyro.inputs.rateDegreesPerSecond = 10;
+  }
+
+  @AfterAll
+  static void deleteLog() throws IOException {
+    if (s_log != null) {
+      Files.deleteIfExists(s_log);
+    }
+  }
+
+  private static long countRecords(Path log) throws IOException {
+    try (TelemetryLogReader reader = new TelemetryLogReader(log)) {
+      double[] record = new double[reader.getRecordWidth()];
+      long records = 0;
+      while (reader.next(record)) {
+        records++;
+      }
+      return records;
+    }
+  }
+
+  // <> every replay starts the clock over, like a fresh process would
+  private static LogReplay.Result replay(Path log) throws IOException {
+    SimHooks.restartTiming();
+    return LogReplay.replay(log);
+  }
+
+  @Test
+  void replayMatchesRecording() throws IOException {
+    LogReplay.Result result = replay(s_log);
+    assertEquals(kLoops, result.records);
+    assertFalse(result.diverged(), result.toString());
+  }
+
+  @Test
+  void perturbedInputDivergesAtThatLoop(@TempDir Path directory)
+    throws IOException {
+    Path perturbed = directory.resolve("perturbed.bin");
+    Files.copy(s_log, perturbed);
+
+    int channel;
+    int width;
+    double timestamp;
+    try (TelemetryLogReader reader = new TelemetryLogReader(s_log)) {
+      channel = reader.indexOf(LogReplay.modulePositionChannel(0));
+      width = reader.getRecordWidth();
+      double[] record = new double[width];
+      for (int loop = 0; loop <= kPerturbedLoop; loop++) {
+        assertTrue(reader.next(record));
+      }
+      timestamp = record[0];
+    }
+    assertTrue(channel > 0);
+
+    // <> records are fixed width at the end of the file, so the header is
+    // <> whatever comes before them
+    long recordBytes = (long) width * Double.BYTES;
+    long header = Files.size(perturbed) - kLoops * recordBytes;
+    long offset =
+      header + kPerturbedLoop * recordBytes + (long) channel * Double.BYTES;
+    try (
+      FileChannel file = FileChannel.open(
+        perturbed,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      ByteBuffer value = ByteBuffer.allocate(Double.BYTES);
+      file.read(value, offset);
+      value.flip();
+      double position = value.getDouble();
+      value.clear();
+      // <> the wheel jumps half a meter for one loop
+      value.putDouble(position + 0.5);
+      value.flip();
+      file.write(value, offset);
+    }
+
+    LogReplay.Result result = replay(perturbed);
+    assertTrue(result.diverged(), result.toString());
+    assertEquals(timestamp, result.firstDivergence);
+  }
+}